@@ -0,0 +1,145 @@
+// Sustained send load over STOMP: each virtual user owns a 1-to-1 conversation, sends RATE messages
+// per second on it and measures the time to the server's ack (persisted) and to the topic broadcast.
+//
+//   k6 run -e BASE_URL=http://localhost:8080 -e VUS=200 -e RATE=5 -e DURATION=2m loadtest/chat-throughput.js
+//
+// See "Load Testing" in README.md for comparing platform and virtual threads.
+import http from 'k6/http';
+import ws from 'k6/ws';
+import encoding from 'k6/encoding';
+import { check } from 'k6';
+import { Counter, Trend } from 'k6/metrics';
+
+const BASE_URL = __ENV.BASE_URL || 'http://localhost:8080';
+const WS_URL = BASE_URL.replace(/^http/, 'ws') + '/ws';
+const VUS = parseInt(__ENV.VUS || '100');
+const RATE = parseFloat(__ENV.RATE || '5');
+const DURATION = __ENV.DURATION || '2m';
+const RUN = __ENV.RUN_ID || String(Date.now());
+
+const ackLatency = new Trend('chat_ack_latency', true);
+const deliveryLatency = new Trend('chat_delivery_latency', true);
+const sent = new Counter('chat_messages_sent');
+const acked = new Counter('chat_messages_acked');
+const failed = new Counter('chat_messages_failed');
+
+export const options = {
+    scenarios: {
+        send: { executor: 'per-vu-iterations', vus: VUS, iterations: 1, maxDuration: '1h' },
+    },
+    setupTimeout: '10m',
+    thresholds: {
+        chat_ack_latency: ['p(99)<500'],
+        chat_messages_failed: ['count<10'],
+    },
+};
+
+function json(res) {
+    check(res, { 'status 200': (r) => r.status === 200 });
+    return res.json();
+}
+
+function login(username) {
+    const password = 'load-test-password';
+    http.post(`${BASE_URL}/api/auth/register`,
+        JSON.stringify({ username, email: `${username}@load.test`, password }),
+        { headers: { 'Content-Type': 'application/json' } });
+    const token = json(http.post(`${BASE_URL}/api/auth/login`,
+        JSON.stringify({ usernameOrEmail: username, password }),
+        { headers: { 'Content-Type': 'application/json' } })).data.accessToken;
+    const claims = JSON.parse(encoding.b64decode(token.split('.')[1], 'rawurl', 's'));
+    return { token, userId: claims.userId };
+}
+
+export function setup() {
+    const pairs = [];
+    for (let i = 0; i < VUS; i++) {
+        const sender = login(`lt${RUN}s${i}`);
+        const receiver = login(`lt${RUN}r${i}`);
+        const conversation = json(http.post(`${BASE_URL}/api/conversations`,
+            JSON.stringify({ targetUserId: receiver.userId }),
+            { headers: { 'Content-Type': 'application/json', Authorization: `Bearer ${sender.token}` } })).data;
+        pairs.push({ token: sender.token, conversationId: conversation.id });
+    }
+    return pairs;
+}
+
+function frame(command, headers, body) {
+    let out = command + '\n';
+    for (const name in headers) {
+        out += `${name}:${headers[name]}\n`;
+    }
+    return out + '\n' + (body || '') + '\u0000';
+}
+
+function parse(data) {
+    return data.split('\u0000').filter((f) => f.trim().length > 0).map((raw) => {
+        const text = raw.replace(/^\n+/, '');
+        const split = text.indexOf('\n\n');
+        const lines = text.substring(0, split).split('\n');
+        const headers = {};
+        lines.slice(1).forEach((line) => {
+            const colon = line.indexOf(':');
+            headers[line.substring(0, colon)] = line.substring(colon + 1);
+        });
+        return { command: lines[0], headers, body: text.substring(split + 2) };
+    });
+}
+
+export default function (pairs) {
+    const pair = pairs[__VU - 1];
+    const sentAt = {};
+    let seq = 0;
+
+    ws.connect(WS_URL, {}, (socket) => {
+        socket.on('open', () => {
+            socket.send(frame('CONNECT', { 'accept-version': '1.2', 'heart-beat': '0,0', Authorization: `Bearer ${pair.token}` }));
+        });
+
+        socket.on('message', (data) => {
+            for (const f of parse(data)) {
+                if (f.command === 'CONNECTED') {
+                    socket.send(frame('SUBSCRIBE', { id: 'acks', destination: '/user/queue/acks' }));
+                    socket.send(frame('SUBSCRIBE', { id: 'topic', destination: `/topic/conversation.${pair.conversationId}` }));
+                    socket.setInterval(() => {
+                        const clientMessageId = `${__VU}-${seq++}`;
+                        sentAt[clientMessageId] = { acked: false, delivered: false, at: Date.now() };
+                        socket.send(frame('SEND', { destination: '/app/chat.send', 'content-type': 'application/json' },
+                            JSON.stringify({ conversationId: pair.conversationId, content: clientMessageId, clientMessageId })));
+                        sent.add(1);
+                    }, 1000 / RATE);
+                } else if (f.command === 'MESSAGE') {
+                    const body = JSON.parse(f.body);
+                    if (body.type === 'ACK') {
+                        const pending = sentAt[body.clientMessageId];
+                        if (body.status === 'PERSISTED' && pending) {
+                            ackLatency.add(Date.now() - pending.at);
+                            acked.add(1);
+                            pending.acked = true;
+                        } else {
+                            failed.add(1);
+                        }
+                    } else if (body.content !== undefined && sentAt[body.content]) {
+                        deliveryLatency.add(Date.now() - sentAt[body.content].at);
+                        sentAt[body.content].delivered = true;
+                    }
+                    if (sentAt[body.clientMessageId || body.content]
+                        && sentAt[body.clientMessageId || body.content].acked
+                        && sentAt[body.clientMessageId || body.content].delivered) {
+                        delete sentAt[body.clientMessageId || body.content];
+                    }
+                } else if (f.command === 'ERROR') {
+                    failed.add(1);
+                }
+            }
+        });
+
+        socket.setTimeout(() => socket.close(), parseDuration(DURATION));
+    });
+}
+
+function parseDuration(value) {
+    const match = /^(\d+)(ms|s|m|h)$/.exec(value);
+    const unit = { ms: 1, s: 1000, m: 60000, h: 3600000 }[match[2]];
+    return parseInt(match[1]) * unit;
+}
@@ -0,0 +1,120 @@
+package com.nazir.realtimechat.benchmark;
+
+import com.nazir.realtimechat.common.util.IdGenerator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Insert throughput of random (version 4) against time-ordered (version 7) BINARY(16) primary keys,
+ * in batches the size of the write-behind pipeline's, into a scratch table shaped like
+ * {@code messages}. The table is pre-filled with {@code prefillRows} so the primary key index is
+ * already large; raise it past the InnoDB buffer pool to see random inserts fall off.
+ * <p>
+ * Needs a MySQL server, by default the docker-compose database on port 3307; pass
+ * {@code -jvmArgsAppend "-Djdbc.url=... -Djdbc.user=... -Djdbc.password=..."} to JMH to use another.
+ * The scratch table is dropped afterwards.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class IdInsertBenchmark {
+
+    private static final int BATCH_SIZE = 200;
+    private static final String TABLE = "id_insert_benchmark";
+
+    private static final String CREATE_TABLE_SQL = """
+        CREATE TABLE %s (
+            id BINARY(16) NOT NULL PRIMARY KEY,
+            conversation_id BINARY(16) NOT NULL,
+            sender_id BINARY(16) NOT NULL,
+            content TEXT NOT NULL,
+            created_at DATETIME(6) NOT NULL,
+            KEY idx_bench_conv_created_id (conversation_id, created_at, id)
+        ) ENGINE=InnoDB
+    """.formatted(TABLE);
+
+    private static final String INSERT_SQL = """
+        INSERT INTO %s (id, conversation_id, sender_id, content, created_at) VALUES (?, ?, ?, ?, ?)
+    """.formatted(TABLE);
+
+    @Param({"v4", "v7"})
+    private String idVersion;
+
+    @Param({"1000000"})
+    private int prefillRows;
+
+    private Connection connection;
+    private Supplier<UUID> ids;
+    private final byte[][] conversations = new byte[64][];
+    private final byte[] sender = IdGenerator.toBytes(UUID.randomUUID());
+    private int row;
+
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException {
+        connection = DriverManager.getConnection(
+                System.getProperty("jdbc.url", "jdbc:mysql://localhost:3307/realtimechat?rewriteBatchedStatements=true"),
+                System.getProperty("jdbc.user", "root"),
+                System.getProperty("jdbc.password", "MySql@123"));
+        ids = "v7".equals(idVersion) ? IdGenerator::timeOrderedId : UUID::randomUUID;
+        for (int i = 0; i < conversations.length; i++) {
+            conversations[i] = IdGenerator.toBytes(IdGenerator.timeOrderedId());
+        }
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("DROP TABLE IF EXISTS " + TABLE);
+            statement.execute(CREATE_TABLE_SQL);
+        }
+        connection.setAutoCommit(false);
+        for (int filled = 0; filled < prefillRows; filled += BATCH_SIZE) {
+            insertBatch();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("DROP TABLE IF EXISTS " + TABLE);
+        } finally {
+            connection.close();
+        }
+    }
+
+    /**
+     * One write-behind flush: a batch insert committed in its own transaction. Scores are rows per second.
+     */
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public void insertBatch() throws SQLException {
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        try (PreparedStatement ps = connection.prepareStatement(INSERT_SQL)) {
+            for (int i = 0; i < BATCH_SIZE; i++) {
+                ps.setBytes(1, IdGenerator.toBytes(ids.get()));
+                ps.setBytes(2, conversations[row++ % conversations.length]);
+                ps.setBytes(3, sender);
+                ps.setString(4, "See you at the standup in five minutes");
+                ps.setTimestamp(5, now);
+                ps.addBatch();
+            }
+            ps.executeBatch();
+        }
+        connection.commit();
+    }
+}
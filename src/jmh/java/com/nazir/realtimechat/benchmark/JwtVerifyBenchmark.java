@@ -0,0 +1,69 @@
+package com.nazir.realtimechat.benchmark;
+
+import com.nazir.realtimechat.common.util.JwtUtil;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Keys;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of authenticating one request's bearer token. {@code perCallParser} is the previous path:
+ * a validity check and a subject lookup, each deriving the key and building a parser.
+ * {@code sharedParser} is a {@link JwtUtil#verifyToken} cache miss: one parse with the parser built
+ * at startup. {@code verifiedCache} is a hit.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class JwtVerifyBenchmark {
+
+    private static final String SECRET = "benchmark-secret-key-that-is-at-least-256-bits-long";
+
+    private JwtUtil jwtUtil;
+    private JwtParser parser;
+    private String token;
+
+    @Setup
+    public void setUp() {
+        jwtUtil = new JwtUtil(new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(jwtUtil, "secret", SECRET);
+        ReflectionTestUtils.setField(jwtUtil, "accessMinutes", 15L);
+        ReflectionTestUtils.setField(jwtUtil, "refreshDays", 7L);
+        ReflectionTestUtils.setField(jwtUtil, "verifiedCacheSize", 10_000L);
+        ReflectionTestUtils.invokeMethod(jwtUtil, "init");
+        parser = (JwtParser) ReflectionTestUtils.getField(jwtUtil, "parser");
+        token = jwtUtil.generateAccessToken("benchmark-user", Map.of("userId", "0190a4c2-7b1e-7c3a-9f00-000000000001"));
+        jwtUtil.verifyToken(token);
+    }
+
+    @Benchmark
+    public String perCallParser() {
+        Jwts.parserBuilder().setSigningKey(Keys.hmacShaKeyFor(SECRET.getBytes(StandardCharsets.UTF_8)))
+                .build().parseClaimsJws(token);
+        return Jwts.parserBuilder().setSigningKey(Keys.hmacShaKeyFor(SECRET.getBytes(StandardCharsets.UTF_8)))
+                .build().parseClaimsJws(token).getBody().getSubject();
+    }
+
+    @Benchmark
+    public Claims sharedParser() {
+        return parser.parseClaimsJws(token).getBody();
+    }
+
+    @Benchmark
+    public Claims verifiedCache() {
+        return jwtUtil.verifyToken(token);
+    }
+}
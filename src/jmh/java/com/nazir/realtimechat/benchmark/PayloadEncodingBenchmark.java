@@ -0,0 +1,81 @@
+package com.nazir.realtimechat.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.nazir.realtimechat.common.util.IdGenerator;
+import com.nazir.realtimechat.config.JacksonConfig;
+import com.nazir.realtimechat.message.dto.MessageResponse;
+import com.nazir.realtimechat.message.dto.TypingState;
+import com.nazir.realtimechat.message.entity.Message;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of encoding one outbound payload as JSON, as CBOR from the source object (the local and
+ * relayed-with-type path of {@code PayloadEncodingInterceptor}) and as CBOR from the JSON tree
+ * (the fallback). Encoded sizes are printed once per trial.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class PayloadEncodingBenchmark {
+
+    @Param({"MessageResponse", "TypingState"})
+    private String payloadType;
+
+    private ObjectMapper jsonMapper;
+    private ObjectMapper cborMapper;
+    private Object payload;
+    private byte[] json;
+
+    @Setup
+    public void setUp() throws Exception {
+        jsonMapper = new JacksonConfig().objectMapper();
+        cborMapper = jsonMapper.copyWith(new CBORFactory());
+        payload = switch (payloadType) {
+            case "MessageResponse" -> MessageResponse.builder()
+                    .id(IdGenerator.timeOrderedId())
+                    .conversationId(IdGenerator.timeOrderedId())
+                    .senderId(UUID.randomUUID())
+                    .content("See you at the standup in five minutes")
+                    .status(Message.MessageStatus.SENT)
+                    .createdAt(Instant.now())
+                    .build();
+            case "TypingState" -> TypingState.builder()
+                    .conversationId(IdGenerator.timeOrderedId())
+                    .startedUserIds(List.of(UUID.randomUUID(), UUID.randomUUID()))
+                    .stoppedUserIds(List.of(UUID.randomUUID()))
+                    .build();
+            default -> throw new IllegalArgumentException(payloadType);
+        };
+        json = jsonMapper.writeValueAsBytes(payload);
+        System.out.printf("%n%s: JSON %d B, CBOR from object %d B, CBOR from tree %d B%n", payloadType,
+                json.length, cborMapper.writeValueAsBytes(payload).length, cborFromTree().length);
+    }
+
+    @Benchmark
+    public byte[] json() throws Exception {
+        return jsonMapper.writeValueAsBytes(payload);
+    }
+
+    @Benchmark
+    public byte[] cborFromObject() throws Exception {
+        return cborMapper.writeValueAsBytes(payload);
+    }
+
+    @Benchmark
+    public byte[] cborFromTree() throws Exception {
+        return cborMapper.writeValueAsBytes(jsonMapper.readTree(json));
+    }
+}
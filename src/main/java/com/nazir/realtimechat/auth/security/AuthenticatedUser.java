@@ -0,0 +1,80 @@
+package com.nazir.realtimechat.auth.security;
+
+import com.nazir.realtimechat.common.constants.SecurityConstants;
+import com.nazir.realtimechat.common.exception.UnauthorizedException;
+import io.jsonwebtoken.Claims;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import java.security.Principal;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Principal built from JWT claims, so the user id and username are known without a {@code users} query.
+ */
+@Getter
+@ToString
+@RequiredArgsConstructor
+public class AuthenticatedUser implements UserDetails {
+
+    private static final List<GrantedAuthority> AUTHORITIES = List.of(new SimpleGrantedAuthority("ROLE_USER"));
+
+    private final UUID userId;
+    private final String username;
+
+    public static AuthenticatedUser fromClaims(Claims claims) {
+        String userId = claims.get(SecurityConstants.USER_ID_CLAIM, String.class);
+        if (userId == null || claims.getSubject() == null) {
+            throw new UnauthorizedException("Token is missing user claims");
+        }
+        return new AuthenticatedUser(UUID.fromString(userId), claims.getSubject());
+    }
+
+    /**
+     * Unwraps the principal Spring attaches to STOMP handlers (the {@link Authentication} set at CONNECT).
+     */
+    public static AuthenticatedUser from(Principal principal) {
+        if (principal instanceof Authentication authentication
+                && authentication.getPrincipal() instanceof AuthenticatedUser user) {
+            return user;
+        }
+        throw new UnauthorizedException("Not authenticated");
+    }
+
+    @Override
+    public Collection<? extends GrantedAuthority> getAuthorities() {
+        return AUTHORITIES;
+    }
+
+    @Override
+    public String getPassword() {
+        return null;
+    }
+
+    @Override
+    public boolean isAccountNonExpired() {
+        return true;
+    }
+
+    @Override
+    public boolean isAccountNonLocked() {
+        return true;
+    }
+
+    @Override
+    public boolean isCredentialsNonExpired() {
+        return true;
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return true;
+    }
+}
@@ -3,10 +3,12 @@ package com.nazir.realtimechat.auth.service;
 import com.nazir.realtimechat.auth.dto.AuthResponse;
 import com.nazir.realtimechat.auth.dto.LoginRequest;
 import com.nazir.realtimechat.auth.dto.RegisterRequest;
+import com.nazir.realtimechat.common.constants.SecurityConstants;
 import com.nazir.realtimechat.common.exception.BadRequestException;
 import com.nazir.realtimechat.common.util.JwtUtil;
 import com.nazir.realtimechat.user.entity.User;
 import com.nazir.realtimechat.user.repository.UserRepository;
+import com.nazir.realtimechat.user.service.UserDirectory;
 import java.util.HashMap;
 import java.util.Map;
 import lombok.extern.slf4j.Slf4j;
@@ -21,11 +23,14 @@ public class AuthService {
     private final UserRepository userRepository;
     private final PasswordEncoder passwordEncoder;
     private final JwtUtil jwtUtil;
+    private final UserDirectory userDirectory;
 
-    public AuthService(UserRepository userRepository, PasswordEncoder passwordEncoder, JwtUtil jwtUtil) {
+    public AuthService(UserRepository userRepository, PasswordEncoder passwordEncoder, JwtUtil jwtUtil,
+                       UserDirectory userDirectory) {
         this.userRepository = userRepository;
         this.passwordEncoder = passwordEncoder;
         this.jwtUtil = jwtUtil;
+        this.userDirectory = userDirectory;
     }
 
     @Transactional
@@ -44,6 +49,7 @@ public class AuthService {
         user.setEmail(request.getEmail());
         user.setPassword(passwordEncoder.encode(request.getPassword()));
         userRepository.save(user);
+        userDirectory.registered(user);
         log.info("Successfully registered user with ID: {}", user.getId());
     }
 
@@ -60,8 +66,8 @@ public class AuthService {
             throw new BadRequestException("Invalid credentials");
         }
         Map<String, Object> claims = new HashMap<>();
-        claims.put("userId", user.getId().toString());
-        claims.put("username", user.getUsername());
+        claims.put(SecurityConstants.USER_ID_CLAIM, user.getId().toString());
+        claims.put(SecurityConstants.USERNAME_CLAIM, user.getUsername());
         String access = jwtUtil.generateAccessToken(user.getUsername(), claims);
         String refresh = jwtUtil.generateRefreshToken(user.getUsername(), claims);
         log.info("Successfully generated tokens for user: {}", user.getUsername());
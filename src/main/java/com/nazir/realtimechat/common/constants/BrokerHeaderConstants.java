@@ -0,0 +1,14 @@
+package com.nazir.realtimechat.common.constants;
+
+/**
+ * Native STOMP headers that classify outbound messages for the per-session slow-consumer policy.
+ */
+public class BrokerHeaderConstants {
+    /** {@code low}: first to be dropped for a backed-up session (typing). */
+    public static final String PRIORITY_HEADER = "chat-priority";
+    public static final String PRIORITY_LOW = "low";
+    /** State updates with the same key replace each other while a session is backed up. */
+    public static final String COALESCE_KEY_HEADER = "chat-coalesce-key";
+    /** Id of the chat message carried, used to build resume tokens. */
+    public static final String MESSAGE_ID_HEADER = "chat-message-id";
+}
@@ -3,4 +3,6 @@ package com.nazir.realtimechat.common.constants;
 public class SecurityConstants {
     public static final String AUTHORIZATION_HEADER = "Authorization";
     public static final String BEARER_PREFIX = "Bearer ";
+    public static final String USER_ID_CLAIM = "userId";
+    public static final String USERNAME_CLAIM = "username";
 }
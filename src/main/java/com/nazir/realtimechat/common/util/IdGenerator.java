@@ -1,9 +1,89 @@
 package com.nazir.realtimechat.common.util;
 
+import java.nio.ByteBuffer;
+import java.security.SecureRandom;
+import java.util.Comparator;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
 
+/**
+ * Time-ordered (version 7) UUIDs for every primary key, and their BINARY(16) form for JDBC code.
+ */
 public class IdGenerator {
-    public static String generateId() {
-        return UUID.randomUUID().toString();
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+    private static final int SEQUENCE_BITS = 12;
+
+    // Epoch millis in the high bits, a per-millisecond sequence in the low 12 bits
+    private static final AtomicLong LAST_TICK = new AtomicLong();
+
+    /**
+     * Orders ids as MySQL orders their BINARY(16) form: unsigned, byte by byte. {@link UUID#compareTo}
+     * compares signed halves, which disagrees once the top bit is set.
+     */
+    public static final Comparator<UUID> BINARY_ORDER = Comparator
+            .comparing(UUID::getMostSignificantBits, Long::compareUnsigned)
+            .thenComparing(UUID::getLeastSignificantBits, Long::compareUnsigned);
+
+    /**
+     * Generates a version 7 UUID: 48 bits of epoch milliseconds, a 12 bit sequence that keeps
+     * ids from this JVM strictly increasing within a millisecond, then 62 random bits.
+     * If the sequence overflows, the timestamp borrows from the next millisecond rather than
+     * going backwards.
+     */
+    public static UUID timeOrderedId() {
+        long now = System.currentTimeMillis() << SEQUENCE_BITS;
+        long tick = LAST_TICK.updateAndGet(last -> Math.max(now, last + 1));
+        long millis = tick >>> SEQUENCE_BITS;
+        long sequence = tick & 0x0FFFL;
+        long msb = (millis << 16) | 0x7000L | sequence;
+        long lsb = (RANDOM.nextLong() & 0x3FFFFFFFFFFFFFFFL) | 0x8000000000000000L;
+        return new UUID(msb, lsb);
+    }
+
+    /**
+     * Epoch milliseconds embedded in a version 7 UUID.
+     */
+    public static long timestampOf(UUID id) {
+        return id.getMostSignificantBits() >>> 16;
+    }
+
+    /**
+     * Whether an id is a version 7 UUID. Rows created before time-ordered ids were introduced carry
+     * random version 4 ids, which do not sort by creation time.
+     */
+    public static boolean isTimeOrdered(UUID id) {
+        return id.version() == 7;
+    }
+
+    /**
+     * Lowest possible id for a timestamp: every version 7 id generated at or after
+     * {@code epochMillis} sorts above it in BINARY(16) order.
+     */
+    public static UUID lowestIdAt(long epochMillis) {
+        return new UUID(epochMillis << 16, 0L);
+    }
+
+    /**
+     * Smallest version 7 id for a timestamp: a position that sorts before every message created
+     * from then on, usable wherever a last-seen message id is expected.
+     */
+    public static UUID firstTimeOrderedIdAt(long epochMillis) {
+        return new UUID((epochMillis << 16) | 0x7000L, Long.MIN_VALUE);
+    }
+
+    /**
+     * Big-endian 16 byte form of a UUID, matching how Hibernate stores UUIDs in BINARY(16) columns.
+     */
+    public static byte[] toBytes(UUID id) {
+        return ByteBuffer.allocate(16)
+                .putLong(id.getMostSignificantBits())
+                .putLong(id.getLeastSignificantBits())
+                .array();
+    }
+
+    public static UUID fromBytes(byte[] bytes) {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        return new UUID(buffer.getLong(), buffer.getLong());
     }
 }
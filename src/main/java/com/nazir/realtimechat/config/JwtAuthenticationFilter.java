@@ -1,5 +1,6 @@
 package com.nazir.realtimechat.config;
 
+import com.nazir.realtimechat.auth.security.AuthenticatedUser;
 import com.nazir.realtimechat.common.constants.SecurityConstants;
 import com.nazir.realtimechat.common.util.JwtUtil;
 import jakarta.servlet.FilterChain;
@@ -10,8 +11,6 @@ import java.io.IOException;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
-import org.springframework.security.core.userdetails.UserDetails;
-import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
 import org.springframework.stereotype.Component;
 import org.springframework.util.StringUtils;
@@ -22,11 +21,9 @@ import org.springframework.web.filter.OncePerRequestFilter;
 public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
     private final JwtUtil jwtUtil;
-    private final UserDetailsService userDetailsService;
 
-    public JwtAuthenticationFilter(JwtUtil jwtUtil, UserDetailsService userDetailsService) {
+    public JwtAuthenticationFilter(JwtUtil jwtUtil) {
         this.jwtUtil = jwtUtil;
-        this.userDetailsService = userDetailsService;
     }
 
     @Override
@@ -39,19 +36,14 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         }
         String token = authHeader.substring(SecurityConstants.BEARER_PREFIX.length());
         try {
-            if (jwtUtil.isTokenValid(token)) {
-                String username = jwtUtil.extractSubject(token);
-                log.debug("JWT token valid for user: {}", username);
-                UserDetails userDetails = userDetailsService.loadUserByUsername(username);
-                UsernamePasswordAuthenticationToken authentication =
-                        new UsernamePasswordAuthenticationToken(userDetails, null, userDetails.getAuthorities());
-                authentication.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
-                SecurityContextHolder.getContext().setAuthentication(authentication);
-            } else {
-                log.warn("Invalid JWT token received for request: {}", request.getRequestURI());
-            }
+            AuthenticatedUser user = AuthenticatedUser.fromClaims(jwtUtil.verifyToken(token));
+            log.debug("JWT token valid for user: {}", user.getUsername());
+            UsernamePasswordAuthenticationToken authentication =
+                    new UsernamePasswordAuthenticationToken(user, null, user.getAuthorities());
+            authentication.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
+            SecurityContextHolder.getContext().setAuthentication(authentication);
         } catch (Exception e) {
-            log.error("Authentication failed for request: {}. Error: {}", request.getRequestURI(), e.getMessage());
+            log.warn("Invalid JWT token received for request: {}. Error: {}", request.getRequestURI(), e.getMessage());
         }
         filterChain.doFilter(request, response);
     }
@@ -0,0 +1,31 @@
+package com.nazir.realtimechat.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.UUID;
+
+/**
+ * Identifies this node in messages it publishes to other nodes, so it can recognise and skip its
+ * own echoes. Taken from {@code chat.broker.node-id}, or random per process when unset.
+ */
+@Slf4j
+@Component
+public class NodeIdentity {
+
+    private final String nodeId;
+
+    public NodeIdentity(@Value("${chat.broker.node-id:}") String nodeId) {
+        this.nodeId = nodeId.isBlank() ? UUID.randomUUID().toString() : nodeId;
+        log.info("Running as node {}", this.nodeId);
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    public boolean isSelf(String origin) {
+        return nodeId.equals(origin);
+    }
+}
@@ -1,5 +1,6 @@
 package com.nazir.realtimechat.config;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.authentication.AuthenticationManager;
@@ -17,13 +18,20 @@ import org.springframework.web.cors.UrlBasedCorsConfigurationSource;
 
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.Set;
 
 @Configuration
 @EnableMethodSecurity
 public class SecurityConfig {
 
+    // Actuator endpoints open to anything that can reach the management port
+    private static final Set<String> MANAGEMENT_PATHS = Set.of("/actuator/health", "/actuator/info", "/actuator/prometheus");
+
     private final JwtAuthenticationFilter jwtAuthenticationFilter;
 
+    @Value("${management.server.port:8081}")
+    private int managementPort;
+
     public SecurityConfig(JwtAuthenticationFilter jwtAuthenticationFilter) {
         this.jwtAuthenticationFilter = jwtAuthenticationFilter;
     }
@@ -39,10 +47,14 @@ public class SecurityConfig {
                                 "/v3/api-docs/**",
                                 "/swagger-ui/**",
                                 "/swagger-ui.html",
-                                "/actuator/health",
-                                "/actuator/info",
+                                // Liveness and readiness probes, mirrored from the health endpoint onto the public port
+                                "/livez",
+                                "/readyz",
                                 "/ws/**"
                         ).permitAll()
+                        // Actuator is only served on the management port, which binds to an internal address
+                        .requestMatchers(request -> request.getLocalPort() == managementPort
+                                && MANAGEMENT_PATHS.contains(request.getRequestURI())).permitAll()
                         .requestMatchers("/api/presence/**").authenticated()
                         .anyRequest().authenticated()
                 )
@@ -1,13 +1,29 @@
 package com.nazir.realtimechat.config;
 
+import com.nazir.realtimechat.config.broker.RedisBrokerPublisher;
 import com.nazir.realtimechat.config.interceptor.AuthChannelInterceptor;
+import com.nazir.realtimechat.config.interceptor.InboundFrameMetricsInterceptor;
+import com.nazir.realtimechat.config.websocket.DeflateAwareUpgradeStrategy;
+import com.nazir.realtimechat.config.websocket.PayloadEncodingInterceptor;
+import com.nazir.realtimechat.config.websocket.SlowConsumerGuard;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.messaging.converter.ByteArrayMessageConverter;
+import org.springframework.messaging.converter.MessageConverter;
+import org.springframework.messaging.converter.StringMessageConverter;
 import org.springframework.messaging.simp.config.ChannelRegistration;
 import org.springframework.messaging.simp.config.MessageBrokerRegistry;
 import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
 import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
 import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketTransportRegistration;
+import org.springframework.web.socket.server.support.DefaultHandshakeHandler;
+
+import java.util.List;
 
 @Configuration
 @EnableWebSocketMessageBroker
@@ -15,13 +31,40 @@ import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerCo
 public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
 
     private final AuthChannelInterceptor authChannelInterceptor;
+    private final InboundFrameMetricsInterceptor inboundFrameMetricsInterceptor;
+    private final ObjectProvider<RedisBrokerPublisher> redisBrokerPublisher;
+    private final SlowConsumerGuard slowConsumerGuard;
+    private final PayloadEncodingInterceptor payloadEncodingInterceptor;
+
+    // Same switch as Tomcat's request threads, so one property moves the whole request path
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean virtualThreads;
+
+    // Tasks per channel in flight at once in virtual-thread mode; further sends wait for a slot
+    @Value("${chat.websocket.virtual-threads.max-concurrent-tasks:10000}")
+    private int maxConcurrentTasks;
+
+    @Value("${chat.websocket.send-time-limit-ms:10000}")
+    private int sendTimeLimitMs;
+
+    @Value("${chat.websocket.send-buffer-size-limit-kb:512}")
+    private int sendBufferSizeLimitKb;
+
+    @Value("${chat.websocket.permessage-deflate.enabled:true}")
+    private boolean perMessageDeflate;
 
     @Override
     public void configureMessageBroker(MessageBrokerRegistry config) {
         // Enable a simple memory-based message broker to carry the messages 
         // back to the client on destinations prefixed with /topic
         config.enableSimpleBroker("/topic", "/queue");
-        
+
+        // In chat.broker.mode=redis, broadcasts are also published to Redis so that
+        // subscribers connected to other nodes receive them (see RedisBrokerSubscriber).
+        // The broker channel itself stays synchronous: it runs on the publishing thread (a virtual
+        // inbound thread in virtual-thread mode), which keeps each session's broadcasts in order
+        redisBrokerPublisher.ifAvailable(publisher -> config.configureBrokerChannel().interceptors(publisher));
+
         // Designate the /app prefix for messages that are bound for methods 
         // annotated with @MessageMapping
         config.setApplicationDestinationPrefixes("/app");
@@ -32,18 +75,69 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
 
     @Override
     public void registerStompEndpoints(StompEndpointRegistry registry) {
+        // Handle each session's inbound frames one at a time, in the order they arrived
+        registry.setPreserveReceiveOrder(true);
+
+        // permessage-deflate is negotiated by Tomcat when the client offers it; the switch can turn it off
+        DefaultHandshakeHandler handshakeHandler =
+                new DefaultHandshakeHandler(new DeflateAwareUpgradeStrategy(perMessageDeflate));
+
         // Use setAllowedOriginPatterns("*") to avoid CORS issues in Spring Boot 3
         registry.addEndpoint("/ws")
+                .setHandshakeHandler(handshakeHandler)
                 .setAllowedOriginPatterns("*");
         
         registry.addEndpoint("/ws")
+                .setHandshakeHandler(handshakeHandler)
                 .setAllowedOriginPatterns("*")
                 .withSockJS();
     }
 
     @Override
     public void configureClientInboundChannel(ChannelRegistration registration) {
-        // Register our custom authentication interceptor
-        registration.interceptors(authChannelInterceptor);
+        // Register our custom authentication interceptor, behind the one counting rejected frames
+        registration.interceptors(inboundFrameMetricsInterceptor, authChannelInterceptor);
+        if (virtualThreads) {
+            registration.executor(virtualThreadExecutor("ws-inbound-"));
+        }
+    }
+
+    @Override
+    public void configureClientOutboundChannel(ChannelRegistration registration) {
+        // Per-session queues: delivers each session's messages in publish order and applies
+        // the slow-consumer policy (replaces setPreservePublishOrder)
+        registration.executor(slowConsumerGuard);
+        // Switches payloads to the encoding each session negotiated at CONNECT
+        registration.interceptors(payloadEncodingInterceptor);
+    }
+
+    @Override
+    public boolean configureMessageConverters(List<MessageConverter> messageConverters) {
+        // The converters Spring Boot registers, with a JSON converter that keeps each payload's
+        // source object so compact encodings are produced from it rather than from the JSON
+        messageConverters.add(new StringMessageConverter());
+        messageConverters.add(new ByteArrayMessageConverter());
+        messageConverters.add(payloadEncodingInterceptor.jsonConverter());
+        return false;
+    }
+
+    @Override
+    public void configureWebSocketTransport(WebSocketTransportRegistration registration) {
+        registration.setSendTimeLimit(sendTimeLimitMs);
+        registration.setSendBufferSizeLimit(sendBufferSizeLimitKb * 1024);
+        registration.addDecoratorFactory(slowConsumerGuard);
+        registration.addDecoratorFactory(payloadEncodingInterceptor);
+    }
+
+    /**
+     * Handlers on these threads block on JDBC, Redis and the in-memory caches. None of them holds a
+     * monitor while blocked: Connector/J 9.x locks its session with ReentrantLock (8.x still used
+     * synchronized), and the caches load outside Caffeine's map locks.
+     */
+    private TaskExecutor virtualThreadExecutor(String threadNamePrefix) {
+        SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor(threadNamePrefix);
+        executor.setVirtualThreads(true);
+        executor.setConcurrencyLimit(maxConcurrentTasks);
+        return executor;
     }
 }
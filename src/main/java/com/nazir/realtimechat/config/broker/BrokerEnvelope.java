@@ -0,0 +1,21 @@
+package com.nazir.realtimechat.config.broker;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A broker message as it travels between nodes over Redis pub/sub.
+ * {@code origin} lets the publishing node ignore its own echo. {@code payloadType} names the class
+ * the payload was converted from, when it is one of this application's, so receiving nodes can
+ * rebuild the object before re-encoding it for their sessions.
+ */
+public record BrokerEnvelope(String origin, String destination, String contentType,
+                             Map<String, List<String>> nativeHeaders, byte[] payload, String payloadType) {
+
+    static final String PAYLOAD_TYPE_PREFIX = "com.nazir.realtimechat.";
+
+    static String payloadTypeOf(Object source) {
+        return source != null && source.getClass().getName().startsWith(PAYLOAD_TYPE_PREFIX)
+                ? source.getClass().getName() : null;
+    }
+}
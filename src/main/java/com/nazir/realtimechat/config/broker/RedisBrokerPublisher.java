@@ -0,0 +1,95 @@
+package com.nazir.realtimechat.config.broker;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nazir.realtimechat.config.NodeIdentity;
+import com.nazir.realtimechat.config.websocket.PayloadEncodingInterceptor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeType;
+
+/**
+ * Broker channel interceptor used in {@code chat.broker.mode=redis}. Every application broadcast
+ * to a {@code /topic/...} or {@code /user/...} destination is delivered locally by the simple broker
+ * as usual and additionally published to a Redis channel sharded by destination, so that nodes with
+ * subscribers for it can deliver it to their own sessions.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "chat.broker.mode", havingValue = "redis")
+public class RedisBrokerPublisher implements ChannelInterceptor {
+
+    static final String CHANNEL_PREFIX = "chat:broker:";
+    static final String RELAYED_HEADER = "chatRelayedFrom";
+    static final String TOPIC_PREFIX = "/topic/";
+    static final String USER_PREFIX = "/user/";
+
+    private final StringRedisTemplate redisTemplate;
+    private final ObjectMapper objectMapper;
+    private final NodeIdentity nodeIdentity;
+
+    public RedisBrokerPublisher(StringRedisTemplate redisTemplate, ObjectMapper objectMapper, NodeIdentity nodeIdentity) {
+        this.redisTemplate = redisTemplate;
+        this.objectMapper = objectMapper;
+        this.nodeIdentity = nodeIdentity;
+        log.info("Redis broker relay enabled on node {}", nodeIdentity.getNodeId());
+    }
+
+    /**
+     * Maps a destination to its Redis channel, or {@code null} if the destination is node-local.
+     * Conversation topics get one channel each; user destinations get one channel per user.
+     */
+    static String channelFor(String destination) {
+        if (destination == null) {
+            return null;
+        }
+        if (destination.startsWith(TOPIC_PREFIX)) {
+            return CHANNEL_PREFIX + "topic:" + destination.substring(TOPIC_PREFIX.length());
+        }
+        if (destination.startsWith(USER_PREFIX)) {
+            String rest = destination.substring(USER_PREFIX.length());
+            int slash = rest.indexOf('/');
+            return slash > 0 ? userChannel(rest.substring(0, slash)) : null;
+        }
+        return null;
+    }
+
+    static String userChannel(String username) {
+        return CHANNEL_PREFIX + "user:" + username;
+    }
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.wrap(message);
+        if (accessor.getMessageType() != SimpMessageType.MESSAGE
+                || accessor.getHeader(RELAYED_HEADER) != null
+                || !(message.getPayload() instanceof byte[] payload)) {
+            return message;
+        }
+        String redisChannel = channelFor(accessor.getDestination());
+        if (redisChannel == null) {
+            return message;
+        }
+        // Sends addressed to a single session id are node-local by construction
+        if (accessor.getDestination().startsWith(USER_PREFIX) && accessor.getSessionId() != null) {
+            return message;
+        }
+        MimeType contentType = accessor.getContentType();
+        BrokerEnvelope envelope = new BrokerEnvelope(nodeIdentity.getNodeId(), accessor.getDestination(),
+                contentType != null ? contentType.toString() : null, accessor.toNativeHeaderMap(), payload,
+                BrokerEnvelope.payloadTypeOf(accessor.getHeader(PayloadEncodingInterceptor.SOURCE_HEADER)));
+        try {
+            redisTemplate.convertAndSend(redisChannel, objectMapper.writeValueAsString(envelope));
+        } catch (Exception e) {
+            // Local subscribers still receive the message; only remote nodes miss it
+            log.error("Failed to publish {} to Redis channel {}: {}", accessor.getDestination(), redisChannel, e.getMessage());
+        }
+        return message;
+    }
+}
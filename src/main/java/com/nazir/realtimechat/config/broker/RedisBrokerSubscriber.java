@@ -0,0 +1,219 @@
+package com.nazir.realtimechat.config.broker;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nazir.realtimechat.config.NodeIdentity;
+import com.nazir.realtimechat.config.websocket.PayloadEncodingInterceptor;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeType;
+import org.springframework.web.socket.messaging.SessionConnectedEvent;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+import org.springframework.web.socket.messaging.SessionSubscribeEvent;
+import org.springframework.web.socket.messaging.SessionUnsubscribeEvent;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Receiving side of the Redis broker relay. Tracks the STOMP sessions connected to this node and
+ * keeps a Redis subscription open only for channels with at least one local subscriber: one per
+ * subscribed {@code /topic/...} destination and one per locally connected user. Messages published
+ * by other nodes are re-injected into the broker channel, so the simple broker delivers them to the
+ * local sessions only.
+ * <p>
+ * Reference counts change atomically in the channel map, but the Redis subscribe and unsubscribe
+ * calls run outside it, under a lock of the channel's own, so a slow subscription holds up neither
+ * other channels nor the map.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "chat.broker.mode", havingValue = "redis")
+@RequiredArgsConstructor
+public class RedisBrokerSubscriber implements MessageListener {
+
+    private final NodeIdentity nodeIdentity;
+    private final RedisMessageListenerContainer listenerContainer;
+    private final SimpMessagingTemplate messagingTemplate;
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+
+    private final Map<String, LocalSession> sessions = new ConcurrentHashMap<>();
+    private final Map<String, Channel> channels = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    void registerMetrics() {
+        Gauge.builder("chat.broker.redis.channels", channels, Map::size)
+                .description("Redis broker channels this node is subscribed to")
+                .register(meterRegistry);
+    }
+
+    @EventListener
+    public void onConnected(SessionConnectedEvent event) {
+        String sessionId = SimpMessageHeaderAccessor.getSessionId(event.getMessage().getHeaders());
+        String userChannel = event.getUser() != null ? RedisBrokerPublisher.userChannel(event.getUser().getName()) : null;
+        if (sessionId != null && sessions.putIfAbsent(sessionId, new LocalSession(userChannel)) == null && userChannel != null) {
+            retain(userChannel);
+        }
+    }
+
+    @EventListener
+    public void onSubscribe(SessionSubscribeEvent event) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.wrap(event.getMessage());
+        String destination = accessor.getDestination();
+        LocalSession session = sessions.get(accessor.getSessionId());
+        if (session == null || destination == null || !destination.startsWith(RedisBrokerPublisher.TOPIC_PREFIX)) {
+            return;
+        }
+        String channel = RedisBrokerPublisher.channelFor(destination);
+        if (session.subscriptions.putIfAbsent(accessor.getSubscriptionId(), channel) == null) {
+            retain(channel);
+        }
+    }
+
+    @EventListener
+    public void onUnsubscribe(SessionUnsubscribeEvent event) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.wrap(event.getMessage());
+        LocalSession session = sessions.get(accessor.getSessionId());
+        if (session == null || accessor.getSubscriptionId() == null) {
+            return;
+        }
+        String channel = session.subscriptions.remove(accessor.getSubscriptionId());
+        if (channel != null) {
+            release(channel);
+        }
+    }
+
+    @EventListener
+    public void onDisconnect(SessionDisconnectEvent event) {
+        // Disconnect can be reported more than once per session; only the first removal releases
+        LocalSession session = sessions.remove(event.getSessionId());
+        if (session == null) {
+            return;
+        }
+        session.subscriptions.values().forEach(this::release);
+        if (session.userChannel != null) {
+            release(session.userChannel);
+        }
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        try {
+            BrokerEnvelope envelope = objectMapper.readValue(message.getBody(), BrokerEnvelope.class);
+            if (nodeIdentity.isSelf(envelope.origin())) {
+                return;
+            }
+            SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+            if (envelope.contentType() != null) {
+                accessor.setContentType(MimeType.valueOf(envelope.contentType()));
+            }
+            if (envelope.nativeHeaders() != null) {
+                envelope.nativeHeaders().forEach((name, values) -> values.forEach(v -> accessor.addNativeHeader(name, v)));
+            }
+            accessor.setHeader(RedisBrokerPublisher.RELAYED_HEADER, envelope.origin());
+            Object source = readSource(envelope);
+            if (source != null) {
+                accessor.setHeader(PayloadEncodingInterceptor.SOURCE_HEADER, source);
+            }
+            accessor.setLeaveMutable(true);
+            messagingTemplate.send(envelope.destination(),
+                    MessageBuilder.createMessage(envelope.payload(), accessor.getMessageHeaders()));
+        } catch (Exception e) {
+            log.error("Failed to relay broker message from Redis: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Rebuilds the object a relayed payload was converted from, so that it is re-encoded exactly as
+     * on the publishing node. Only this application's classes are loaded.
+     */
+    private Object readSource(BrokerEnvelope envelope) {
+        String type = envelope.payloadType();
+        if (type == null || !type.startsWith(BrokerEnvelope.PAYLOAD_TYPE_PREFIX)) {
+            return null;
+        }
+        try {
+            return objectMapper.readValue(envelope.payload(), Class.forName(type, false, getClass().getClassLoader()));
+        } catch (Exception e) {
+            log.debug("Relaying {} payload without its source object: {}", type, e.getMessage());
+            return null;
+        }
+    }
+
+    private void retain(String channel) {
+        Channel entry = channels.compute(channel, (c, existing) -> {
+            Channel counted = existing != null ? existing : new Channel(c);
+            counted.refs++;
+            return counted;
+        });
+        entry.sync();
+    }
+
+    private void release(String channel) {
+        Channel entry = channels.computeIfPresent(channel, (c, existing) -> {
+            existing.refs--;
+            return existing;
+        });
+        if (entry != null) {
+            entry.sync();
+        }
+    }
+
+    /**
+     * A Redis channel's reference count and subscription state. Counts only change inside the
+     * map's compute calls; the subscription follows the count in {@link #sync}.
+     */
+    private final class Channel {
+        private final String name;
+        private volatile int refs;
+        private boolean subscribed;
+
+        private Channel(String name) {
+            this.name = name;
+        }
+
+        /**
+         * Subscribes or unsubscribes to match the current count. Callers sync after every change,
+         * so whichever runs last leaves the subscription matching the final count.
+         */
+        private synchronized void sync() {
+            boolean wanted = refs > 0;
+            if (wanted && !subscribed) {
+                listenerContainer.addMessageListener(RedisBrokerSubscriber.this, new ChannelTopic(name));
+                subscribed = true;
+                log.debug("Subscribed to Redis broker channel {}", name);
+            } else if (!wanted && subscribed) {
+                listenerContainer.removeMessageListener(RedisBrokerSubscriber.this, new ChannelTopic(name));
+                subscribed = false;
+                log.debug("Unsubscribed from Redis broker channel {}", name);
+            }
+            if (!subscribed) {
+                // Dropped only while unused; a retain racing with this keeps the entry and subscribes it
+                channels.computeIfPresent(name, (c, current) -> current == this && current.refs == 0 ? null : current);
+            }
+        }
+    }
+
+    private static final class LocalSession {
+        private final String userChannel;
+        private final Map<String, String> subscriptions = new ConcurrentHashMap<>();
+
+        private LocalSession(String userChannel) {
+            this.userChannel = userChannel;
+        }
+    }
+}
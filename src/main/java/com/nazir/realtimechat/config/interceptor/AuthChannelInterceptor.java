@@ -1,7 +1,10 @@
 package com.nazir.realtimechat.config.interceptor;
 
+import com.nazir.realtimechat.auth.security.AuthenticatedUser;
 import com.nazir.realtimechat.common.constants.SecurityConstants;
 import com.nazir.realtimechat.common.util.JwtUtil;
+import com.nazir.realtimechat.message.replay.ReplayService;
+import com.nazir.realtimechat.presence.service.PresenceHeartbeatAggregator;
 import com.nazir.realtimechat.presence.service.PresenceService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -12,8 +15,6 @@ import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
 import org.springframework.messaging.support.ChannelInterceptor;
 import org.springframework.messaging.support.MessageHeaderAccessor;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
-import org.springframework.security.core.userdetails.UserDetails;
-import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.stereotype.Component;
 import org.springframework.util.StringUtils;
 
@@ -23,8 +24,9 @@ import org.springframework.util.StringUtils;
 public class AuthChannelInterceptor implements ChannelInterceptor {
 
     private final JwtUtil jwtUtil;
-    private final UserDetailsService userDetailsService;
     private final PresenceService presenceService;
+    private final PresenceHeartbeatAggregator heartbeatAggregator;
+    private final ReplayService replayService;
 
     @Override
     public Message<?> preSend(Message<?> message, MessageChannel channel) {
@@ -38,28 +40,43 @@ public class AuthChannelInterceptor implements ChannelInterceptor {
 
                 if (StringUtils.hasText(authHeader) && authHeader.startsWith(SecurityConstants.BEARER_PREFIX)) {
                     String token = authHeader.substring(SecurityConstants.BEARER_PREFIX.length());
-                    if (jwtUtil.isTokenValid(token)) {
-                        String username = jwtUtil.extractSubject(token);
-                        UserDetails userDetails = userDetailsService.loadUserByUsername(username);
-                        UsernamePasswordAuthenticationToken authentication = 
-                                new UsernamePasswordAuthenticationToken(userDetails, null, userDetails.getAuthorities());
-                        
-                        accessor.setUser(authentication);
-                        log.info("WebSocket connection authenticated for user: {}", username);
-                        
-                        // Mark user as online
-                        presenceService.markOnline(username);
-                    } else {
-                        log.error("Invalid JWT token for WebSocket connection");
+                    AuthenticatedUser user;
+                    try {
+                        user = AuthenticatedUser.fromClaims(jwtUtil.verifyToken(token));
+                    } catch (Exception e) {
+                        log.error("Invalid JWT token for WebSocket connection: {}", e.getMessage());
                         throw new IllegalArgumentException("Invalid token");
                     }
+                    UsernamePasswordAuthenticationToken authentication =
+                            new UsernamePasswordAuthenticationToken(user, null, user.getAuthorities());
+
+                    accessor.setUser(authentication);
+                    log.info("WebSocket connection authenticated for user: {}", user.getUsername());
+
+                    // Keep the reconnect cursors until the client subscribes to /app/chat.replay
+                    String resume = accessor.getFirstNativeHeader(ReplayService.RESUME_HEADER);
+                    String resumeToken = accessor.getFirstNativeHeader(ReplayService.RESUME_TOKEN_HEADER);
+                    if (StringUtils.hasText(resumeToken)) {
+                        // Cursors saved by the server when it dropped this client as a slow consumer
+                        String saved = replayService.redeemResumeToken(resumeToken, user.getUsername());
+                        if (saved != null) {
+                            resume = StringUtils.hasText(resume) ? saved + "," + resume : saved;
+                        }
+                    }
+                    if (StringUtils.hasText(resume) && accessor.getSessionAttributes() != null) {
+                        accessor.getSessionAttributes().put(ReplayService.RESUME_ATTRIBUTE, resume);
+                    }
+
+                    // Mark user as online
+                    heartbeatAggregator.sessionOpened(user.getUsername(), accessor.getSessionId());
+                    presenceService.markOnline(user.getUsername());
                 } else {
                     log.error("Missing or invalid Authorization header for WebSocket connection");
                     throw new IllegalArgumentException("Missing token");
                 }
             } else if (accessor.getUser() != null) {
-                // Refresh presence for any other command from an authenticated user
-                presenceService.markOnline(accessor.getUser().getName());
+                // Record activity in memory; heartbeats are flushed to Redis in batches
+                heartbeatAggregator.recordActivity(accessor.getUser().getName());
             }
         }
 
@@ -74,7 +91,10 @@ public class AuthChannelInterceptor implements ChannelInterceptor {
             if (accessor.getUser() != null) {
                 String username = accessor.getUser().getName();
                 log.info("WebSocket DISCONNECT detected for user: {}", username);
-                presenceService.markOffline(username);
+                // Other tabs or devices may still be connected to this node
+                if (heartbeatAggregator.sessionClosed(username, accessor.getSessionId())) {
+                    presenceService.markOffline(username);
+                }
             }
         }
     }
@@ -0,0 +1,47 @@
+package com.nazir.realtimechat.config.interceptor;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHandler;
+import org.springframework.messaging.support.ExecutorChannelInterceptor;
+import org.springframework.stereotype.Component;
+
+/**
+ * Counts inbound STOMP frames that were rejected by a later interceptor (a CONNECT without a valid
+ * token, for instance) or whose handler threw. Registered first on the inbound channel so it sees
+ * every rejection.
+ */
+@Component
+@RequiredArgsConstructor
+public class InboundFrameMetricsInterceptor implements ExecutorChannelInterceptor {
+
+    private final MeterRegistry meterRegistry;
+
+    private Counter failedFrames;
+
+    @PostConstruct
+    void init() {
+        failedFrames = Counter.builder("chat.websocket.frames.failed")
+                .description("Frames that could not be sent or handled")
+                .tag("direction", "inbound")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public void afterSendCompletion(Message<?> message, MessageChannel channel, boolean sent, Exception ex) {
+        if (ex != null) {
+            failedFrames.increment();
+        }
+    }
+
+    @Override
+    public void afterMessageHandled(Message<?> message, MessageChannel channel, MessageHandler handler, Exception ex) {
+        if (ex != null) {
+            failedFrames.increment();
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.nazir.realtimechat.config.websocket;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.websocket.server.ServerEndpointConfig;
+import org.springframework.web.socket.server.standard.StandardWebSocketUpgradeStrategy;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Upgrade strategy with a switch for permessage-deflate. Tomcat negotiates the extension itself
+ * from the client's {@code Sec-WebSocket-Extensions} header, so when compression is off the offer
+ * is removed from the request before Tomcat sees it.
+ */
+public class DeflateAwareUpgradeStrategy extends StandardWebSocketUpgradeStrategy {
+
+    private static final String EXTENSIONS_HEADER = "Sec-WebSocket-Extensions";
+    private static final String PERMESSAGE_DEFLATE = "permessage-deflate";
+
+    private final boolean perMessageDeflate;
+
+    public DeflateAwareUpgradeStrategy(boolean perMessageDeflate) {
+        this.perMessageDeflate = perMessageDeflate;
+    }
+
+    @Override
+    protected void upgradeHttpToWebSocket(HttpServletRequest request, HttpServletResponse response,
+                                          ServerEndpointConfig endpointConfig, Map<String, String> pathParams) throws Exception {
+        super.upgradeHttpToWebSocket(perMessageDeflate ? request : withoutDeflateOffer(request),
+                response, endpointConfig, pathParams);
+    }
+
+    private static HttpServletRequest withoutDeflateOffer(HttpServletRequest request) {
+        return new HttpServletRequestWrapper(request) {
+            @Override
+            public String getHeader(String name) {
+                if (!EXTENSIONS_HEADER.equalsIgnoreCase(name)) {
+                    return super.getHeader(name);
+                }
+                Enumeration<String> values = getHeaders(name);
+                return values.hasMoreElements() ? values.nextElement() : null;
+            }
+
+            @Override
+            public Enumeration<String> getHeaders(String name) {
+                if (!EXTENSIONS_HEADER.equalsIgnoreCase(name)) {
+                    return super.getHeaders(name);
+                }
+                List<String> kept = new ArrayList<>();
+                for (String value : Collections.list(super.getHeaders(name))) {
+                    String offers = Arrays.stream(value.split(","))
+                            .filter(offer -> !offer.split(";")[0].trim().equalsIgnoreCase(PERMESSAGE_DEFLATE))
+                            .collect(Collectors.joining(","));
+                    if (!offers.isBlank()) {
+                        kept.add(offers);
+                    }
+                }
+                return Collections.enumeration(kept);
+            }
+        };
+    }
+}
@@ -0,0 +1,156 @@
+package com.nazir.realtimechat.config.websocket;
+
+import org.springframework.messaging.Message;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.WebSocketSessionDecorator;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Session decorator that, while a batch is open, collects outbound STOMP frames and writes them
+ * as one WebSocket message. STOMP frames are NUL-terminated, so clients split them again.
+ * Text and binary frames are never mixed in one message; control messages are written through.
+ * <p>
+ * Outside a batch every message is written straight through. Either way, each frame remembers the
+ * message it was encoded from, and the listener gets those messages once the write has succeeded.
+ * Frames that are discarded or fail to write are never reported.
+ */
+final class FrameBatchingSession extends WebSocketSessionDecorator {
+
+    interface FlushListener {
+        /**
+         * @param sources the message behind each frame written, in order; null for frames sent outside a drain
+         */
+        void flushed(WebSocketSession session, WebSocketMessage<?> message, List<Message<?>> sources);
+    }
+
+    private record Frame(WebSocketMessage<?> payload, Message<?> source) {
+    }
+
+    private final int maxFrames;
+    private final int maxBytes;
+    private final FlushListener listener;
+
+    // Held across the socket write, which can block; unlike a monitor, virtual threads waiting for it are not pinned
+    private final ReentrantLock lock = new ReentrantLock();
+    private final List<Frame> buffer = new ArrayList<>();
+    private int bufferedBytes;
+    private boolean batching;
+    private Message<?> source;
+
+    FrameBatchingSession(WebSocketSession delegate, int maxFrames, int maxBytes, FlushListener listener) {
+        super(delegate);
+        this.maxFrames = maxFrames;
+        this.maxBytes = maxBytes;
+        this.listener = listener;
+    }
+
+    void begin() {
+        lock.lock();
+        try {
+            batching = true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Sets the message that the frames sent next are encoded from, or clears it with null.
+     */
+    void attach(Message<?> source) {
+        lock.lock();
+        try {
+            this.source = source;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Closes the batch if nothing is left to flush; otherwise the caller should flush and try again.
+     */
+    boolean tryEnd() {
+        lock.lock();
+        try {
+            if (!buffer.isEmpty()) {
+                return false;
+            }
+            batching = false;
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void discard() {
+        lock.lock();
+        try {
+            buffer.clear();
+            bufferedBytes = 0;
+            batching = false;
+            source = null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void sendMessage(WebSocketMessage<?> message) throws IOException {
+        lock.lock();
+        try {
+            if (!batching || !(message instanceof TextMessage || message instanceof BinaryMessage)) {
+                flush();
+                super.sendMessage(message);
+                listener.flushed(getDelegate(), message, Collections.singletonList(source));
+                return;
+            }
+            if (!buffer.isEmpty() && buffer.get(0).payload().getClass() != message.getClass()) {
+                flush();
+            }
+            buffer.add(new Frame(message, source));
+            bufferedBytes += message.getPayloadLength();
+            if (buffer.size() >= maxFrames || bufferedBytes >= maxBytes) {
+                flush();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void flush() throws IOException {
+        lock.lock();
+        try {
+            if (buffer.isEmpty()) {
+                return;
+            }
+            WebSocketMessage<?> combined = buffer.size() == 1 ? buffer.get(0).payload() : combine();
+            List<Message<?>> sources = new ArrayList<>(buffer.size());
+            buffer.forEach(frame -> sources.add(frame.source()));
+            buffer.clear();
+            bufferedBytes = 0;
+            super.sendMessage(combined);
+            listener.flushed(getDelegate(), combined, sources);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private WebSocketMessage<?> combine() {
+        if (buffer.get(0).payload() instanceof TextMessage) {
+            StringBuilder text = new StringBuilder(bufferedBytes);
+            buffer.forEach(frame -> text.append(((TextMessage) frame.payload()).getPayload()));
+            return new TextMessage(text);
+        }
+        ByteBuffer bytes = ByteBuffer.allocate(bufferedBytes);
+        buffer.forEach(frame -> bytes.put(((BinaryMessage) frame.payload()).getPayload().duplicate()));
+        return new BinaryMessage(bytes.flip());
+    }
+}
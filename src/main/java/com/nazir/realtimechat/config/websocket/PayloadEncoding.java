@@ -0,0 +1,35 @@
+package com.nazir.realtimechat.config.websocket;
+
+import org.springframework.util.MimeType;
+import org.springframework.util.MimeTypeUtils;
+
+import java.util.Map;
+
+/**
+ * Encodings a client can ask for with the {@code payload-encoding} header of its STOMP CONNECT frame.
+ * CBOR frames are labelled {@code application/octet-stream;format=cbor}: Spring only sends binary
+ * WebSocket frames for octet-stream content.
+ */
+public enum PayloadEncoding {
+    JSON(MimeTypeUtils.APPLICATION_JSON),
+    CBOR(new MimeType("application", "octet-stream", Map.of("format", "cbor")));
+
+    public static final String HEADER = "payload-encoding";
+
+    private final MimeType contentType;
+
+    PayloadEncoding(MimeType contentType) {
+        this.contentType = contentType;
+    }
+
+    public MimeType getContentType() {
+        return contentType;
+    }
+
+    /**
+     * The encoding named by a CONNECT header value, JSON when absent or unknown.
+     */
+    public static PayloadEncoding fromHeader(String value) {
+        return CBOR.name().equalsIgnoreCase(value) ? CBOR : JSON;
+    }
+}
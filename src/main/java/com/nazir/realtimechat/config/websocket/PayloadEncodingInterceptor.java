@@ -0,0 +1,177 @@
+package com.nazir.realtimechat.config.websocket;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.converter.DefaultContentTypeResolver;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.messaging.support.MessageHeaderAccessor;
+import org.springframework.messaging.support.NativeMessageHeaderAccessor;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeType;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.WebSocketHandlerDecorator;
+import org.springframework.web.socket.handler.WebSocketHandlerDecoratorFactory;
+import org.springframework.web.socket.messaging.SessionConnectEvent;
+import org.springframework.web.socket.sockjs.transport.SockJsSession;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Re-encodes outbound JSON payloads as CBOR for sessions that asked for it at CONNECT.
+ * Payloads are converted once per broadcast rather than once per recipient: the JSON converter
+ * keeps the original object in a header, and encoded bytes are cached by that object's identity.
+ * In CBOR, UUIDs are written as 16-byte byte strings. Messages relayed from other nodes carry their
+ * payload type, so the receiving node rebuilds the object and encodes it the same way; only a payload
+ * of unknown type is re-encoded from its JSON tree, with UUIDs left as text. SockJS sessions always
+ * get JSON, since SockJS only carries text frames.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class PayloadEncodingInterceptor implements ChannelInterceptor, WebSocketHandlerDecoratorFactory {
+
+    // Object a JSON payload was converted from; never written to the wire (not a native header)
+    public static final String SOURCE_HEADER = "chat.payloadSource";
+
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+
+    private final Set<String> binaryCapableSessions = ConcurrentHashMap.newKeySet();
+    private final Map<String, PayloadEncoding> encodings = new ConcurrentHashMap<>();
+
+    private ObjectMapper cborMapper;
+    // Weak keys compare by identity: one entry per payload object or JSON buffer being fanned out
+    private final Cache<Object, byte[]> encoded = Caffeine.newBuilder().weakKeys().maximumSize(10_000).build();
+
+    private Counter jsonBytesCounter;
+    private Counter cborBytesCounter;
+
+    @PostConstruct
+    void init() {
+        cborMapper = objectMapper.copyWith(new CBORFactory());
+        jsonBytesCounter = meterRegistry.counter("chat.websocket.payload.bytes", "encoding", "json");
+        cborBytesCounter = meterRegistry.counter("chat.websocket.payload.bytes", "encoding", "cbor");
+    }
+
+    /**
+     * The broker's JSON converter, configured as Spring Boot configures it, that also records
+     * the source object of each payload for {@link #preSend}.
+     */
+    public MappingJackson2MessageConverter jsonConverter() {
+        MappingJackson2MessageConverter converter = new MappingJackson2MessageConverter(objectMapper) {
+            @Override
+            protected Object convertToInternal(Object payload, MessageHeaders headers, Object conversionHint) {
+                MessageHeaderAccessor accessor = headers != null
+                        ? MessageHeaderAccessor.getAccessor(headers, MessageHeaderAccessor.class) : null;
+                if (accessor != null && accessor.isMutable()) {
+                    accessor.setHeader(SOURCE_HEADER, payload);
+                }
+                return super.convertToInternal(payload, headers, conversionHint);
+            }
+        };
+        DefaultContentTypeResolver resolver = new DefaultContentTypeResolver();
+        resolver.setDefaultMimeType(MimeTypeUtils.APPLICATION_JSON);
+        converter.setContentTypeResolver(resolver);
+        return converter;
+    }
+
+    @EventListener
+    public void onSessionConnect(SessionConnectEvent event) {
+        MessageHeaders headers = event.getMessage().getHeaders();
+        String sessionId = SimpMessageHeaderAccessor.getSessionId(headers);
+        PayloadEncoding requested = PayloadEncoding.fromHeader(
+                NativeMessageHeaderAccessor.getFirstNativeHeader(PayloadEncoding.HEADER, headers));
+        if (sessionId == null || requested == PayloadEncoding.JSON) {
+            return;
+        }
+        if (!binaryCapableSessions.contains(sessionId)) {
+            log.info("Session {} asked for {} over SockJS, keeping JSON", sessionId, requested);
+            return;
+        }
+        encodings.put(sessionId, requested);
+    }
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        MessageHeaders headers = message.getHeaders();
+        String sessionId = SimpMessageHeaderAccessor.getSessionId(headers);
+        if (sessionId == null || encodings.get(sessionId) != PayloadEncoding.CBOR
+                || !(message.getPayload() instanceof byte[] json) || json.length == 0
+                || !MimeTypeUtils.APPLICATION_JSON.isCompatibleWith(contentType(headers))) {
+            return message;
+        }
+        Object source = headers.get(SOURCE_HEADER);
+        byte[] cbor;
+        try {
+            cbor = encoded.get(source != null ? source : json, key -> encode(key, json));
+        } catch (IllegalStateException e) {
+            log.warn("Sending JSON to session {}, CBOR encoding failed: {}", sessionId, e.getMessage());
+            return message;
+        }
+        jsonBytesCounter.increment(json.length);
+        cborBytesCounter.increment(cbor.length);
+
+        MessageHeaderAccessor accessor = MessageHeaderAccessor.getMutableAccessor(message);
+        accessor.setContentType(PayloadEncoding.CBOR.getContentType());
+        return MessageBuilder.createMessage(cbor, accessor.getMessageHeaders());
+    }
+
+    @Override
+    public WebSocketHandler decorate(WebSocketHandler handler) {
+        return new WebSocketHandlerDecorator(handler) {
+            @Override
+            public void afterConnectionEstablished(WebSocketSession session) throws Exception {
+                if (!(session instanceof SockJsSession)) {
+                    binaryCapableSessions.add(session.getId());
+                }
+                super.afterConnectionEstablished(session);
+            }
+
+            @Override
+            public void afterConnectionClosed(WebSocketSession session, CloseStatus closeStatus) throws Exception {
+                binaryCapableSessions.remove(session.getId());
+                encodings.remove(session.getId());
+                super.afterConnectionClosed(session, closeStatus);
+            }
+        };
+    }
+
+    private byte[] encode(Object source, byte[] json) {
+        try {
+            // Without a source object, as for a relayed payload of unknown type, re-encode the JSON tree
+            return source instanceof byte[]
+                    ? cborMapper.writeValueAsBytes(objectMapper.readTree(json))
+                    : cborMapper.writeValueAsBytes(source);
+        } catch (IOException e) {
+            throw new IllegalStateException(e.getMessage(), e);
+        }
+    }
+
+    private static MimeType contentType(MessageHeaders headers) {
+        Object value = headers.get(MessageHeaders.CONTENT_TYPE);
+        if (value instanceof MimeType mimeType) {
+            return mimeType;
+        }
+        return value instanceof String text ? MimeType.valueOf(text) : null;
+    }
+}
@@ -0,0 +1,598 @@
+package com.nazir.realtimechat.config.websocket;
+
+import com.nazir.realtimechat.common.constants.BrokerHeaderConstants;
+import com.nazir.realtimechat.common.util.IdGenerator;
+import com.nazir.realtimechat.message.replay.ReplayService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.support.MessageHandlingRunnable;
+import org.springframework.messaging.support.NativeMessageHeaderAccessor;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.WebSocketHandlerDecorator;
+import org.springframework.web.socket.handler.WebSocketHandlerDecoratorFactory;
+import org.springframework.web.socket.messaging.SessionConnectedEvent;
+import org.springframework.web.socket.messaging.SessionSubscribeEvent;
+import org.springframework.web.socket.sockjs.transport.SockJsSession;
+
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.zip.Deflater;
+
+/**
+ * Executor of the client outbound channel that gives every WebSocket session its own FIFO queue,
+ * so a slow socket only backs up its own messages and never the fan-out to other members.
+ * <p>
+ * As a session's queue grows, typing events ({@code chat-priority: low}) are dropped first, then
+ * state updates sharing a {@code chat-coalesce-key} (presence, read receipts) replace each other in
+ * place. Past {@code disconnect-depth}, or when one send has been stuck for longer than
+ * {@code send-time-limit-ms}, the session is closed with a resume token in the close reason;
+ * presenting it as the {@code resume-token} CONNECT header replays what the session missed.
+ * <p>
+ * In batching mode ({@code chat.websocket.batching.enabled}) a session's drain starts
+ * {@code window-ms} after its first queued frame, and the frames it sends go out as one write.
+ * <p>
+ * Drains run on platform threads from a pool that grows instead of queueing, up to
+ * {@code max-drain-threads}, so a socket blocked in a write holds only its own thread. Virtual
+ * threads are not used for them: Tomcat's blocking socket write waits inside a monitor, which would
+ * pin the carrier. A periodic sweep closes sessions whose send has been stuck past the limit, and a
+ * session whose drain finds the pool full is closed the same way instead of getting another thread.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class SlowConsumerGuard implements TaskExecutor, WebSocketHandlerDecoratorFactory {
+
+    public static final String CLOSE_REASON_PREFIX = "slow-consumer resume-token=";
+
+    private static final String CONVERSATION_TOPIC_PREFIX = "/topic/conversation.";
+    private static final String PERMESSAGE_DEFLATE = "permessage-deflate";
+
+    private final ReplayService replayService;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean virtualThreads;
+
+    @Value("${chat.websocket.virtual-threads.max-concurrent-tasks:10000}")
+    private int maxConcurrentTasks;
+
+    @Value("${chat.websocket.send-time-limit-ms:10000}")
+    private long sendTimeLimitMs;
+
+    @Value("${chat.websocket.outbound.max-drain-threads:512}")
+    private int maxDrainThreads;
+
+    @Value("${chat.websocket.outbound.drain-keep-alive-seconds:60}")
+    private int drainKeepAliveSeconds;
+
+    @Value("${chat.websocket.slow-consumer.drop-typing-depth:32}")
+    private int dropTypingDepth;
+
+    @Value("${chat.websocket.slow-consumer.coalesce-depth:128}")
+    private int coalesceDepth;
+
+    @Value("${chat.websocket.slow-consumer.disconnect-depth:512}")
+    private int disconnectDepth;
+
+    @Value("${chat.websocket.batching.enabled:false}")
+    private boolean batchingEnabled;
+
+    @Value("${chat.websocket.batching.window-ms:5}")
+    private long batchWindowMs;
+
+    @Value("${chat.websocket.batching.max-frames:64}")
+    private int batchMaxFrames;
+
+    @Value("${chat.websocket.batching.max-kb:64}")
+    private int batchMaxKb;
+
+    // Share of flushes whose compression ratio is estimated; each sample deflates the flushed bytes
+    @Value("${chat.websocket.batching.compression-sample-rate:0.01}")
+    private double compressionSampleRate;
+
+    private final Map<String, SessionQueue> sessions = new ConcurrentHashMap<>();
+
+    private TaskExecutor delegate;
+    private ThreadPoolTaskExecutor drainPool;
+    private ScheduledExecutorService batchWindow;
+
+    private DistributionSummary depthSummary;
+    private Counter droppedCounter;
+    private Counter coalescedCounter;
+    private Counter disconnectedCounter;
+    private Counter discardedFrames;
+    private Counter failedFrames;
+    private Timer deliveryLatency;
+    private DistributionSummary framesPerFlush;
+    private DistributionSummary bytesPerFlush;
+    private DistributionSummary compressionRatio;
+
+    @PostConstruct
+    void init() {
+        // Core sized like the pool Spring gives the outbound channel by default; with no queue, a drain
+        // that finds every thread blocked on a slow socket gets a new thread instead of waiting
+        drainPool = new ThreadPoolTaskExecutor();
+        int corePoolSize = Runtime.getRuntime().availableProcessors() * 2;
+        drainPool.setCorePoolSize(corePoolSize);
+        drainPool.setMaxPoolSize(Math.max(corePoolSize, maxDrainThreads));
+        drainPool.setQueueCapacity(0);
+        drainPool.setKeepAliveSeconds(drainKeepAliveSeconds);
+        drainPool.setAllowCoreThreadTimeOut(true);
+        drainPool.setThreadNamePrefix("clientOutboundChannel-");
+        drainPool.initialize();
+        if (virtualThreads) {
+            // Messages for sessions without a queue, which are rare and never wait on a slow socket
+            SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("ws-outbound-");
+            executor.setVirtualThreads(true);
+            executor.setConcurrencyLimit(maxConcurrentTasks);
+            delegate = executor;
+        } else {
+            delegate = drainPool;
+        }
+
+        depthSummary = DistributionSummary.builder("chat.websocket.session.queue.depth")
+                .description("Outbound messages queued for a session, sampled on each enqueue")
+                .register(meterRegistry);
+        Gauge.builder("chat.websocket.session.queue.max-depth", sessions,
+                        s -> s.values().stream().mapToInt(q -> q.depth).max().orElse(0))
+                .description("Deepest outbound queue across this node's sessions")
+                .register(meterRegistry);
+        Gauge.builder("chat.websocket.outbound.drain-threads", drainPool, ThreadPoolTaskExecutor::getActiveCount)
+                .description("Threads currently draining session queues")
+                .register(meterRegistry);
+        Gauge.builder("chat.websocket.sessions", sessions, Map::size)
+                .description("WebSocket sessions open on this node")
+                .register(meterRegistry);
+        droppedCounter = meterRegistry.counter("chat.websocket.slow-consumer.typing-dropped");
+        coalescedCounter = meterRegistry.counter("chat.websocket.slow-consumer.coalesced");
+        disconnectedCounter = meterRegistry.counter("chat.websocket.slow-consumer.disconnected");
+        discardedFrames = Counter.builder("chat.websocket.frames.dropped")
+                .description("Outbound frames discarded because their session was closed as a slow consumer")
+                .tag("reason", "slow-consumer")
+                .register(meterRegistry);
+        failedFrames = Counter.builder("chat.websocket.frames.failed")
+                .description("Frames that could not be sent or handled")
+                .tag("direction", "outbound")
+                .register(meterRegistry);
+        // Measured from the time in the message's time-ordered id, so it spans accept, broker fan-out and queueing
+        deliveryLatency = Timer.builder("chat.messages.delivery.latency")
+                .description("Time from a chat message being accepted to its frame being written to a subscriber")
+                .publishPercentileHistogram()
+                .minimumExpectedValue(Duration.ofMillis(1))
+                .maximumExpectedValue(Duration.ofSeconds(30))
+                .register(meterRegistry);
+
+        if (batchingEnabled) {
+            batchWindow = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "ws-batch-window");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        framesPerFlush = DistributionSummary.builder("chat.websocket.batch.frames")
+                .description("STOMP frames written per WebSocket message in batching mode")
+                .register(meterRegistry);
+        bytesPerFlush = DistributionSummary.builder("chat.websocket.batch.bytes")
+                .description("Uncompressed size of each batched WebSocket message")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        compressionRatio = DistributionSummary.builder("chat.websocket.compression.ratio")
+                .description("Sampled deflated/uncompressed size of batches sent to permessage-deflate sessions")
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        drainPool.shutdown();
+        if (batchWindow != null) {
+            batchWindow.shutdownNow();
+        }
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        if (!(task instanceof MessageHandlingRunnable handling)) {
+            delegate.execute(task);
+            return;
+        }
+        Message<?> message = handling.getMessage();
+        String sessionId = SimpMessageHeaderAccessor.getSessionId(message.getHeaders());
+        SessionQueue queue = sessionId != null ? sessions.get(sessionId) : null;
+        if (queue == null) {
+            delegate.execute(task);
+            return;
+        }
+
+        String priority = NativeMessageHeaderAccessor.getFirstNativeHeader(
+                BrokerHeaderConstants.PRIORITY_HEADER, message.getHeaders());
+        String coalesceKey = NativeMessageHeaderAccessor.getFirstNativeHeader(
+                BrokerHeaderConstants.COALESCE_KEY_HEADER, message.getHeaders());
+        boolean startDrain = false;
+        boolean disconnect = false;
+        int discarded = 0;
+        synchronized (queue) {
+            if (queue.closing) {
+                discardedFrames.increment();
+                return;
+            }
+            int depth = queue.tasks.size();
+            long sendingFor = queue.sendingSince != 0 ? System.nanoTime() - queue.sendingSince : 0;
+            if (depth >= disconnectDepth || sendingFor > TimeUnit.MILLISECONDS.toNanos(sendTimeLimitMs)) {
+                // The queued frames and this one
+                discarded = depth + 1;
+                queue.closing = true;
+                queue.tasks.clear();
+                queue.depth = 0;
+                disconnect = true;
+            } else if (depth >= dropTypingDepth && BrokerHeaderConstants.PRIORITY_LOW.equals(priority)) {
+                droppedCounter.increment();
+                return;
+            } else if (depth >= coalesceDepth && coalesceKey != null && queue.replace(coalesceKey, task, message)) {
+                coalescedCounter.increment();
+                return;
+            } else {
+                queue.tasks.addLast(new QueuedTask(task, coalesceKey, message));
+                queue.depth = depth + 1;
+                depthSummary.record(depth + 1);
+                if (!queue.draining) {
+                    queue.draining = true;
+                    startDrain = true;
+                }
+            }
+        }
+        if (disconnect) {
+            closeSlowConsumer(queue, discarded);
+        } else if (startDrain && batchingEnabled && queue.batch != null && batchWindowMs > 0) {
+            // Hold the first frame briefly so frames published meanwhile share its write
+            batchWindow.schedule(() -> startDrain(queue), batchWindowMs, TimeUnit.MILLISECONDS);
+        } else if (startDrain) {
+            startDrain(queue);
+        }
+    }
+
+    /**
+     * Hands a session's drain to the pool. When every drain thread is taken, which means that many
+     * sockets are blocked in a write, the session is closed as a slow consumer instead.
+     */
+    private void startDrain(SessionQueue queue) {
+        try {
+            drainPool.execute(() -> drain(queue));
+        } catch (TaskRejectedException e) {
+            int discarded;
+            synchronized (queue) {
+                discarded = queue.tasks.size();
+                queue.closing = true;
+                queue.tasks.clear();
+                queue.depth = 0;
+                queue.draining = false;
+            }
+            log.warn("All {} outbound drain threads are busy, closing session {}", drainPool.getMaxPoolSize(),
+                    queue.session.getId());
+            closeSlowConsumer(queue, discarded);
+        }
+    }
+
+    /**
+     * Closes sessions whose current send has been blocked longer than {@code send-time-limit-ms}.
+     * Enqueueing checks this too, but a stuck session may receive nothing more to trip it.
+     */
+    @Scheduled(fixedDelayString = "${chat.websocket.slow-consumer.sweep-interval-ms:1000}")
+    public void closeStuckSessions() {
+        long limit = TimeUnit.MILLISECONDS.toNanos(sendTimeLimitMs);
+        for (SessionQueue queue : sessions.values()) {
+            int discarded;
+            synchronized (queue) {
+                if (queue.closing || queue.sendingSince == 0 || System.nanoTime() - queue.sendingSince <= limit) {
+                    continue;
+                }
+                discarded = queue.tasks.size();
+                queue.closing = true;
+                queue.tasks.clear();
+                queue.depth = 0;
+            }
+            closeSlowConsumer(queue, discarded);
+        }
+    }
+
+    private void closeSlowConsumer(SessionQueue queue, int discarded) {
+        disconnectedCounter.increment();
+        discardedFrames.increment(discarded);
+        // Off the calling thread: issuing the token talks to Redis and closing may wait on the socket,
+        // inside the same monitor as the blocked write, so a platform thread does it
+        Thread.ofPlatform().daemon().name("ws-slow-consumer-close").start(() -> disconnect(queue));
+    }
+
+    @Override
+    public WebSocketHandler decorate(WebSocketHandler handler) {
+        return new WebSocketHandlerDecorator(handler) {
+            @Override
+            public void afterConnectionEstablished(WebSocketSession session) throws Exception {
+                // SockJS transports frame (and batch) messages themselves. Other sessions report every
+                // write back, batched or not, so deliveries are recorded once they are on the socket
+                FrameBatchingSession batch = !(session instanceof SockJsSession)
+                        ? new FrameBatchingSession(session, batchMaxFrames, batchMaxKb * 1024, SlowConsumerGuard.this::onFlush)
+                        : null;
+                sessions.put(session.getId(), new SessionQueue(session, batch));
+                super.afterConnectionEstablished(batch != null ? batch : session);
+            }
+
+            @Override
+            public void afterConnectionClosed(WebSocketSession session, CloseStatus closeStatus) throws Exception {
+                sessions.remove(session.getId());
+                super.afterConnectionClosed(session, closeStatus);
+            }
+        };
+    }
+
+    /**
+     * Starts the session's resume positions from the ones its client sent at CONNECT, so a session
+     * closed before it is delivered anything still resumes from where the client was.
+     */
+    @EventListener
+    public void onSessionConnected(SessionConnectedEvent event) {
+        String sessionId = SimpMessageHeaderAccessor.getSessionId(event.getMessage().getHeaders());
+        SessionQueue queue = sessionId != null ? sessions.get(sessionId) : null;
+        if (queue == null) {
+            return;
+        }
+        if (event.getUser() != null) {
+            queue.username = event.getUser().getName();
+        }
+        Message<?> connect = (Message<?>) event.getMessage().getHeaders().get(SimpMessageHeaderAccessor.CONNECT_MESSAGE_HEADER);
+        Map<String, Object> attributes = connect != null ? SimpMessageHeaderAccessor.getSessionAttributes(connect.getHeaders()) : null;
+        // Holds the resume header merged with any redeemed resume token
+        Object resume = attributes != null ? attributes.get(ReplayService.RESUME_ATTRIBUTE) : null;
+        if (resume instanceof String header) {
+            ReplayService.parseResumeHeader(header).forEach((conversationId, messageId) ->
+                    queue.lastDelivered.putIfAbsent(conversationId.toString(), messageId.toString()));
+        }
+    }
+
+    /**
+     * A conversation subscribed without a resume position resumes from the time of the subscription.
+     */
+    @EventListener
+    public void onSessionSubscribe(SessionSubscribeEvent event) {
+        String sessionId = SimpMessageHeaderAccessor.getSessionId(event.getMessage().getHeaders());
+        String destination = SimpMessageHeaderAccessor.getDestination(event.getMessage().getHeaders());
+        SessionQueue queue = sessionId != null ? sessions.get(sessionId) : null;
+        if (queue != null && destination != null && destination.startsWith(CONVERSATION_TOPIC_PREFIX)) {
+            queue.lastDelivered.putIfAbsent(destination.substring(CONVERSATION_TOPIC_PREFIX.length()),
+                    IdGenerator.firstTimeOrderedIdAt(System.currentTimeMillis()).toString());
+        }
+    }
+
+    /**
+     * Runs a session's queued sends one at a time, in order, until the queue is empty. With batching,
+     * the frames they produce are written together once the queue runs dry or the batch fills up.
+     */
+    private void drain(SessionQueue queue) {
+        FrameBatchingSession batch = queue.batch;
+        boolean batching = batchingEnabled && batch != null;
+        if (batching) {
+            batch.begin();
+        }
+        while (true) {
+            QueuedTask next;
+            synchronized (queue) {
+                next = queue.closing ? null : queue.tasks.pollFirst();
+                if (next == null && (!batching || queue.closing || batch.tryEnd())) {
+                    if (batching && queue.closing) {
+                        batch.discard();
+                    }
+                    queue.draining = false;
+                    queue.sendingSince = 0;
+                    return;
+                }
+                queue.depth = queue.tasks.size();
+                queue.sendingSince = System.nanoTime();
+            }
+            try {
+                if (next == null) {
+                    batch.flush();
+                } else if (batch != null) {
+                    // Delivery is recorded when the frame is written (onFlush)
+                    batch.attach(next.message);
+                    try {
+                        next.task.run();
+                    } finally {
+                        batch.attach(null);
+                    }
+                } else {
+                    // SockJS: the send has returned, which is as close to the socket as this gets
+                    next.task.run();
+                    queue.recordDelivered(next.message);
+                    recordDeliveryLatency(next.message);
+                }
+            } catch (Throwable e) {
+                failedFrames.increment();
+                log.warn("Outbound send to session {} failed: {}", queue.session.getId(), e.getMessage());
+            }
+        }
+    }
+
+    private void recordDeliveryLatency(Message<?> message) {
+        String messageId = NativeMessageHeaderAccessor.getFirstNativeHeader(
+                BrokerHeaderConstants.MESSAGE_ID_HEADER, message.getHeaders());
+        if (messageId == null) {
+            return;
+        }
+        try {
+            UUID id = UUID.fromString(messageId);
+            if (id.version() == 7) {
+                deliveryLatency.record(Math.max(0, System.currentTimeMillis() - IdGenerator.timestampOf(id)), TimeUnit.MILLISECONDS);
+            }
+        } catch (IllegalArgumentException e) {
+            // A malformed id only costs this sample
+        }
+    }
+
+    /**
+     * Called after a session wrote a WebSocket message, with the chat messages behind its frames.
+     */
+    private void onFlush(WebSocketSession session, WebSocketMessage<?> message, List<Message<?>> sources) {
+        SessionQueue queue = sessions.get(session.getId());
+        for (Message<?> source : sources) {
+            if (source != null) {
+                if (queue != null) {
+                    queue.recordDelivered(source);
+                }
+                recordDeliveryLatency(source);
+            }
+        }
+        if (!batchingEnabled) {
+            return;
+        }
+        framesPerFlush.record(sources.size());
+        bytesPerFlush.record(message.getPayloadLength());
+        if (compressionSampleRate > 0 && ThreadLocalRandom.current().nextDouble() < compressionSampleRate
+                && session.getExtensions().stream().anyMatch(e -> PERMESSAGE_DEFLATE.equals(e.getName()))) {
+            compressionRatio.record(deflatedRatio(message));
+        }
+    }
+
+    /**
+     * Size after raw DEFLATE over size before, for one flushed message. The extension itself keeps
+     * its window between messages, so the real ratio is at least this good.
+     */
+    private static double deflatedRatio(WebSocketMessage<?> message) {
+        byte[] input = message instanceof TextMessage text ? text.asBytes() : toArray(((BinaryMessage) message).getPayload());
+        if (input.length == 0) {
+            return 1.0;
+        }
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        try {
+            deflater.setInput(input);
+            deflater.finish();
+            byte[] out = new byte[input.length + 64];
+            int compressed = 0;
+            while (!deflater.finished()) {
+                compressed += deflater.deflate(out);
+            }
+            return (double) compressed / input.length;
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static byte[] toArray(ByteBuffer payload) {
+        byte[] bytes = new byte[payload.remaining()];
+        payload.duplicate().get(bytes);
+        return bytes;
+    }
+
+    private void disconnect(SessionQueue queue) {
+        String token = null;
+        String resume = queue.resumeHeader();
+        if (queue.username != null && !resume.isEmpty()) {
+            try {
+                token = replayService.issueResumeToken(queue.username, resume);
+            } catch (Exception e) {
+                log.warn("Failed to issue a resume token for session {}: {}", queue.session.getId(), e.getMessage());
+            }
+        }
+        log.warn("Disconnecting slow consumer session {} (user {})", queue.session.getId(), queue.username);
+        try {
+            queue.session.close(token != null
+                    ? CloseStatus.SESSION_NOT_RELIABLE.withReason(CLOSE_REASON_PREFIX + token)
+                    : CloseStatus.SESSION_NOT_RELIABLE);
+        } catch (Exception e) {
+            log.warn("Failed to close slow consumer session {}: {}", queue.session.getId(), e.getMessage());
+        }
+    }
+
+    private static final class QueuedTask {
+        private final String coalesceKey;
+        private Runnable task;
+        private Message<?> message;
+
+        private QueuedTask(Runnable task, String coalesceKey, Message<?> message) {
+            this.task = task;
+            this.coalesceKey = coalesceKey;
+            this.message = message;
+        }
+    }
+
+    private static final class SessionQueue {
+        private final WebSocketSession session;
+        private final FrameBatchingSession batch;
+        private final Deque<QueuedTask> tasks = new ArrayDeque<>();
+        // Last chat message delivered per conversation, seeded at CONNECT and SUBSCRIBE; the starting point of a resume token
+        private final Map<String, String> lastDelivered = new ConcurrentHashMap<>();
+        private volatile String username;
+        private volatile int depth;
+        private boolean draining;
+        private boolean closing;
+        private long sendingSince;
+
+        private SessionQueue(WebSocketSession session, FrameBatchingSession batch) {
+            this.session = session;
+            this.batch = batch;
+        }
+
+        /**
+         * Swaps a queued update with the same coalesce key for the newer one, keeping its place in line.
+         */
+        private boolean replace(String coalesceKey, Runnable task, Message<?> message) {
+            Iterator<QueuedTask> it = tasks.descendingIterator();
+            while (it.hasNext()) {
+                QueuedTask queued = it.next();
+                if (coalesceKey.equals(queued.coalesceKey)) {
+                    queued.task = task;
+                    queued.message = message;
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private void recordDelivered(Message<?> message) {
+            String destination = SimpMessageHeaderAccessor.getDestination(message.getHeaders());
+            String messageId = NativeMessageHeaderAccessor.getFirstNativeHeader(
+                    BrokerHeaderConstants.MESSAGE_ID_HEADER, message.getHeaders());
+            if (messageId != null && destination != null && destination.startsWith(CONVERSATION_TOPIC_PREFIX)) {
+                lastDelivered.put(destination.substring(CONVERSATION_TOPIC_PREFIX.length()), messageId);
+            }
+        }
+
+        private String resumeHeader() {
+            return lastDelivered.entrySet().stream()
+                    .map(e -> e.getKey() + "=" + e.getValue())
+                    .collect(Collectors.joining(","));
+        }
+    }
+}
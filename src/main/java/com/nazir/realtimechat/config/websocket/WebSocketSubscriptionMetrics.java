@@ -0,0 +1,30 @@
+package com.nazir.realtimechat.config.websocket;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.springframework.messaging.simp.user.SimpUserRegistry;
+import org.springframework.stereotype.Component;
+
+/**
+ * Gauges over this node's STOMP user registry: connected users and their live subscriptions.
+ * Both are computed when scraped; sessions are counted by {@link SlowConsumerGuard}.
+ */
+@Component
+@RequiredArgsConstructor
+public class WebSocketSubscriptionMetrics {
+
+    private final SimpUserRegistry userRegistry;
+    private final MeterRegistry meterRegistry;
+
+    @PostConstruct
+    void register() {
+        Gauge.builder("chat.websocket.users", userRegistry, SimpUserRegistry::getUserCount)
+                .description("Users with at least one STOMP session on this node")
+                .register(meterRegistry);
+        Gauge.builder("chat.websocket.subscriptions", userRegistry, registry -> registry.findSubscriptions(s -> true).size())
+                .description("STOMP subscriptions held by this node's sessions")
+                .register(meterRegistry);
+    }
+}
@@ -1,25 +1,33 @@
 package com.nazir.realtimechat.conversation.controller;
 
+import com.nazir.realtimechat.auth.security.AuthenticatedUser;
 import com.nazir.realtimechat.common.dto.ApiResponse;
+import com.nazir.realtimechat.common.dto.CursorPage;
 import com.nazir.realtimechat.conversation.dto.ConversationRequest;
 import com.nazir.realtimechat.conversation.dto.ConversationResponse;
+import com.nazir.realtimechat.conversation.service.ConversationExportService;
 import com.nazir.realtimechat.conversation.service.ConversationService;
-import com.nazir.realtimechat.user.entity.User;
-import com.nazir.realtimechat.user.repository.UserRepository;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
-import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.time.LocalDateTime;
-import java.util.List;
+import java.util.UUID;
+import java.util.zip.GZIPOutputStream;
 
 @Slf4j
 @RestController
@@ -27,14 +35,17 @@ import java.util.List;
 @RequiredArgsConstructor
 public class ConversationController {
 
+    private static final int MAX_PAGE_SIZE = 100;
+    private static final int EXPORT_BUFFER_SIZE = 8192;
+    private static final String NDJSON = "application/x-ndjson";
+
     private final ConversationService conversationService;
-    private final UserRepository userRepository;
+    private final ConversationExportService exportService;
 
     @PostMapping
-    public ResponseEntity<ApiResponse<ConversationResponse>> createConversation(@AuthenticationPrincipal UserDetails userDetails, @Valid @RequestBody ConversationRequest request) {
-        log.info("Request to create conversation with target user {} from authenticated user {}", request.getTargetUserId(), userDetails.getUsername());
-        User currentUser = userRepository.findByUsername(userDetails.getUsername()).orElseThrow();
-        ConversationResponse response = conversationService.createDirectConversation(currentUser.getId(), request.getTargetUserId());
+    public ResponseEntity<ApiResponse<ConversationResponse>> createConversation(@AuthenticationPrincipal AuthenticatedUser currentUser, @Valid @RequestBody ConversationRequest request) {
+        log.info("Request to create conversation with target user {} from authenticated user {}", request.getTargetUserId(), currentUser.getUsername());
+        ConversationResponse response = conversationService.createDirectConversation(currentUser.getUserId(), request.getTargetUserId());
         return ResponseEntity.ok(ApiResponse.<ConversationResponse>builder()
                 .success(true)
                 .data(response)
@@ -44,16 +55,42 @@ public class ConversationController {
     }
 
     @GetMapping
-    public ResponseEntity<ApiResponse<List<ConversationResponse>>> getConversations(@AuthenticationPrincipal UserDetails userDetails) {
-        log.info("Request to fetch conversations for authenticated user {}", userDetails.getUsername());
-        User currentUser = userRepository.findByUsername(userDetails.getUsername()).orElseThrow();
-        List<ConversationResponse> conversations = conversationService.getUserConversations(currentUser.getId());
-        log.info("Successfully fetched {} conversations for user {}", conversations.size(), userDetails.getUsername());
-        return ResponseEntity.ok(ApiResponse.<List<ConversationResponse>>builder()
+    public ResponseEntity<ApiResponse<CursorPage<ConversationResponse>>> getConversations(
+            @AuthenticationPrincipal AuthenticatedUser currentUser,
+            @RequestParam(required = false) String cursor, @RequestParam(defaultValue = "30") int limit) {
+        log.info("Request to fetch conversations for authenticated user {}", currentUser.getUsername());
+        CursorPage<ConversationResponse> conversations = conversationService.getUserConversations(
+                currentUser.getUserId(), cursor, Math.min(Math.max(limit, 1), MAX_PAGE_SIZE));
+        log.info("Successfully fetched {} conversations for user {}", conversations.getItems().size(), currentUser.getUsername());
+        return ResponseEntity.ok(ApiResponse.<CursorPage<ConversationResponse>>builder()
                 .success(true)
                 .data(conversations)
                 .message("Conversations fetched successfully")
                 .timestamp(LocalDateTime.now())
                 .build());
     }
+
+    /**
+     * Full history as NDJSON (one message per line, oldest first), streamed straight from the
+     * database; {@code gzip=true} compresses it.
+     */
+    @GetMapping("/{id}/export")
+    public void exportConversation(@AuthenticationPrincipal AuthenticatedUser currentUser, @PathVariable UUID id,
+                                   @RequestParam(defaultValue = "false") boolean gzip,
+                                   HttpServletResponse response) throws IOException {
+        log.info("Request to export conversation {} from authenticated user {}", id, currentUser.getUsername());
+        exportService.checkAccess(currentUser.getUserId(), id);
+        String filename = "conversation-" + id + (gzip ? ".ndjson.gz" : ".ndjson");
+        response.setContentType(gzip ? "application/gzip" : NDJSON);
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION,
+                ContentDisposition.attachment().filename(filename).build().toString());
+        OutputStream out = response.getOutputStream();
+        if (gzip) {
+            try (GZIPOutputStream compressed = new GZIPOutputStream(out, EXPORT_BUFFER_SIZE)) {
+                exportService.export(id, compressed);
+            }
+        } else {
+            exportService.export(id, out);
+        }
+    }
 }
@@ -2,6 +2,7 @@ package com.nazir.realtimechat.conversation.dto;
 
 import com.fasterxml.jackson.annotation.JsonFormat;
 import com.nazir.realtimechat.conversation.entity.Conversation;
+import com.nazir.realtimechat.message.dto.MessageResponse;
 import com.nazir.realtimechat.user.dto.UserResponse;
 import lombok.Builder;
 import lombok.Getter;
@@ -22,4 +23,8 @@ public class ConversationResponse {
     private Instant lastMessageAt;
     
     private UserResponse otherParticipant;
+
+    private MessageResponse lastMessage;
+
+    private long unreadCount;
 }
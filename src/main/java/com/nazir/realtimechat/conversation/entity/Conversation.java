@@ -1,11 +1,11 @@
 package com.nazir.realtimechat.conversation.entity;
 
 import com.nazir.realtimechat.common.entity.BaseEntity;
+import com.nazir.realtimechat.common.entity.TimeOrderedId;
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.EnumType;
 import jakarta.persistence.Enumerated;
-import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.Id;
 import jakarta.persistence.Table;
 import lombok.Getter;
@@ -23,7 +23,7 @@ import java.util.UUID;
 public class Conversation extends BaseEntity {
 
     @Id
-    @GeneratedValue
+    @TimeOrderedId
     private UUID id;
 
     @Enumerated(EnumType.STRING)
@@ -33,6 +33,9 @@ public class Conversation extends BaseEntity {
     @Column(name = "last_message_at")
     private Instant lastMessageAt;
 
+    @Column(name = "last_message_id")
+    private UUID lastMessageId;
+
     public enum ConversationType {
         DIRECT, GROUP
     }
@@ -1,10 +1,10 @@
 package com.nazir.realtimechat.conversation.entity;
 
+import com.nazir.realtimechat.common.entity.TimeOrderedId;
 import com.nazir.realtimechat.user.entity.User;
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.FetchType;
-import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.Id;
 import jakarta.persistence.Index;
 import jakarta.persistence.JoinColumn;
@@ -36,7 +36,7 @@ import java.util.UUID;
 public class ConversationMember {
 
     @Id
-    @GeneratedValue
+    @TimeOrderedId
     private UUID id;
 
     @ManyToOne(fetch = FetchType.LAZY)
@@ -51,6 +51,17 @@ public class ConversationMember {
     @Column(name = "joined_at", updatable = false)
     private Instant joinedAt;
 
+    /** Read cursor: the latest message this member has read, and when. */
+    @Column(name = "last_read_message_id")
+    private UUID lastReadMessageId;
+
+    @Column(name = "last_read_at")
+    private Instant lastReadAt;
+
+    /** Messages from other members since the read cursor, maintained by the message batch writer. */
+    @Column(name = "unread_count", nullable = false)
+    private long unreadCount;
+
     public ConversationMember(Conversation conversation, User user) {
         this.conversation = conversation;
         this.user = user;
@@ -0,0 +1,136 @@
+package com.nazir.realtimechat.conversation.repository;
+
+import com.nazir.realtimechat.common.util.IdGenerator;
+import com.nazir.realtimechat.conversation.dto.ConversationResponse;
+import com.nazir.realtimechat.conversation.entity.Conversation;
+import com.nazir.realtimechat.message.dto.MessageResponse;
+import com.nazir.realtimechat.message.entity.Message;
+import com.nazir.realtimechat.user.dto.UserResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.Calendar;
+import java.util.List;
+import java.util.TimeZone;
+import java.util.UUID;
+
+/**
+ * Builds a user's inbox in one query: each conversation with its other participant, a preview of
+ * the latest message (read from the archive once it has been archived, even when older legacy
+ * messages are still hot) and the member's maintained
+ * unread counter, keyset-paged on {@code (COALESCE(last_message_at, created_at), id)} descending.
+ */
+@Repository
+@RequiredArgsConstructor
+public class ConversationInboxRepository {
+
+    private static final int PREVIEW_LENGTH = 200;
+
+    private static final String SELECT_INBOX = """
+        SELECT c.id, c.type, c.created_at, c.last_message_at,
+               COALESCE(c.last_message_at, c.created_at) AS activity_at,
+               u.id AS other_id, u.username AS other_username, u.email AS other_email,
+               u.created_at AS other_created_at, u.updated_at AS other_updated_at,
+               COALESCE(am.id, lm.id) AS last_id, COALESCE(am.sender_id, lm.sender_id) AS last_sender_id,
+               LEFT(COALESCE(am.content, lm.content), %d) AS last_content,
+               COALESCE(am.status, lm.status) AS last_status, COALESCE(am.created_at, lm.created_at) AS last_created_at,
+               me.unread_count
+        FROM conversation_members me
+        JOIN conversations c ON c.id = me.conversation_id
+        LEFT JOIN users u ON u.id = (
+            SELECT om.user_id FROM conversation_members om
+            WHERE om.conversation_id = c.id AND om.user_id <> me.user_id
+            LIMIT 1)
+        LEFT JOIN messages lm ON lm.id = (
+            SELECT m.id FROM messages m
+            WHERE m.conversation_id = c.id
+            ORDER BY m.created_at DESC, m.id DESC
+            LIMIT 1)
+        LEFT JOIN messages_archive am ON (lm.id IS NULL OR lm.created_at < c.last_message_at)
+            AND am.id = c.last_message_id AND am.created_at = c.last_message_at
+        WHERE me.user_id = ?
+        """.formatted(PREVIEW_LENGTH);
+
+    private static final String AFTER_CURSOR = """
+        AND (COALESCE(c.last_message_at, c.created_at) < ?
+             OR (COALESCE(c.last_message_at, c.created_at) = ? AND c.id < ?))
+        """;
+
+    private static final String ORDER_AND_LIMIT = """
+        ORDER BY activity_at DESC, c.id DESC
+        LIMIT ?
+        """;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * @param afterActivityAt activity timestamp of the last conversation on the previous page, or null for the first page
+     * @param afterId         id of the last conversation on the previous page, or null for the first page
+     */
+    public List<InboxRow> findInbox(UUID userId, Instant afterActivityAt, UUID afterId, int limit) {
+        Calendar utc = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+        boolean paged = afterActivityAt != null && afterId != null;
+        String sql = SELECT_INBOX + (paged ? AFTER_CURSOR : "") + ORDER_AND_LIMIT;
+        return jdbcTemplate.query(sql, ps -> {
+            int i = 1;
+            ps.setBytes(i++, IdGenerator.toBytes(userId));
+            if (paged) {
+                Timestamp ts = Timestamp.from(afterActivityAt);
+                ps.setTimestamp(i++, ts, utc);
+                ps.setTimestamp(i++, ts, utc);
+                ps.setBytes(i++, IdGenerator.toBytes(afterId));
+            }
+            ps.setInt(i, limit);
+        }, (rs, rowNum) -> mapRow(rs, utc));
+    }
+
+    private InboxRow mapRow(ResultSet rs, Calendar utc) throws SQLException {
+        UUID conversationId = IdGenerator.fromBytes(rs.getBytes("id"));
+        UserResponse other = null;
+        byte[] otherId = rs.getBytes("other_id");
+        if (otherId != null) {
+            other = UserResponse.builder()
+                    .id(IdGenerator.fromBytes(otherId))
+                    .username(rs.getString("other_username"))
+                    .email(rs.getString("other_email"))
+                    .createdAt(instant(rs, "other_created_at", utc))
+                    .updatedAt(instant(rs, "other_updated_at", utc))
+                    .build();
+        }
+        MessageResponse lastMessage = null;
+        byte[] lastId = rs.getBytes("last_id");
+        if (lastId != null) {
+            lastMessage = MessageResponse.builder()
+                    .id(IdGenerator.fromBytes(lastId))
+                    .conversationId(conversationId)
+                    .senderId(IdGenerator.fromBytes(rs.getBytes("last_sender_id")))
+                    .content(rs.getString("last_content"))
+                    .status(Message.MessageStatus.valueOf(rs.getString("last_status")))
+                    .createdAt(instant(rs, "last_created_at", utc))
+                    .build();
+        }
+        ConversationResponse conversation = ConversationResponse.builder()
+                .id(conversationId)
+                .type(Conversation.ConversationType.valueOf(rs.getString("type")))
+                .createdAt(instant(rs, "created_at", utc))
+                .lastMessageAt(instant(rs, "last_message_at", utc))
+                .otherParticipant(other)
+                .lastMessage(lastMessage)
+                .unreadCount(rs.getLong("unread_count"))
+                .build();
+        return new InboxRow(conversation, instant(rs, "activity_at", utc));
+    }
+
+    private static Instant instant(ResultSet rs, String column, Calendar utc) throws SQLException {
+        Timestamp ts = rs.getTimestamp(column, utc);
+        return ts != null ? ts.toInstant() : null;
+    }
+
+    public record InboxRow(ConversationResponse conversation, Instant activityAt) {
+    }
+}
@@ -8,17 +8,25 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
 
 @Repository
 public interface ConversationMemberRepository extends JpaRepository<ConversationMember, UUID> {
+    @Query("SELECT m.user.id FROM ConversationMember m WHERE m.conversation.id = :conversationId")
+    Set<UUID> findUserIdsByConversationId(@Param("conversationId") UUID conversationId);
+
+    @Query("SELECT m.conversation.id FROM ConversationMember m WHERE m.user.id = :userId")
+    Set<UUID> findConversationIdsByUserId(@Param("userId") UUID userId);
+
     @Query("""
-        SELECT m FROM ConversationMember m 
-        JOIN m.conversation c 
-        WHERE m.user.id = :userId 
-        ORDER BY COALESCE(c.lastMessageAt, c.createdAt) DESC
+        SELECT DISTINCT u.username FROM ConversationMember m, ConversationMember o
+        JOIN o.user u
+        WHERE o.conversation = m.conversation
+        AND m.user.id = :userId
+        AND u.id <> :userId
     """)
-    List<ConversationMember> findByUserIdSorted(@Param("userId") UUID userId);
+    Set<String> findPartnerUsernames(@Param("userId") UUID userId);
 
     List<ConversationMember> findByUserId(UUID userId);
     List<ConversationMember> findByConversationId(UUID conversationId);
@@ -0,0 +1,79 @@
+package com.nazir.realtimechat.conversation.repository;
+
+import com.nazir.realtimechat.common.util.IdGenerator;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.Calendar;
+import java.util.TimeZone;
+import java.util.UUID;
+
+/**
+ * Moves members' read cursors. The cursor and the unread counter change in one statement, and the
+ * counter is recomputed from the messages after the new cursor instead of being reset, so it stays
+ * right however the read interleaves with write-behind batches: a batch that committed first is
+ * counted here, and one that commits later only counts messages after the cursor.
+ * <p>
+ * This is deliberately not a constant-time reset to zero. The count only covers messages after
+ * the new cursor, along the (conversation_id, created_at, id) index. That is the messages still unread
+ * after this receipt, normally none or a handful, since clients report the newest message they
+ * displayed. A reset would drop messages that committed after the displayed one but before this
+ * statement, which the batch writer has already counted and will not count again.
+ * <p>
+ * Cursors compare by id, which is creation order for time-ordered ids. A cursor holding a legacy
+ * random id counts as older than every time-ordered message, and legacy messages are never counted.
+ */
+@Repository
+@RequiredArgsConstructor
+public class ReadCursorRepository {
+
+    // True when the cursor column holds a legacy (non version 7) id; the version is the high nibble of byte 7
+    public static final String LEGACY_CURSOR = "SUBSTRING(last_read_message_id, 7, 1) NOT BETWEEN 0x70 AND 0x7F";
+
+    // Bounds the count to recent index entries: a message's created_at is never much earlier than its id's timestamp
+    private static final long ID_CLOCK_SLACK_MILLIS = 1000;
+
+    private static final String MOVE_CURSOR_SQL = """
+        UPDATE conversation_members
+        SET unread_count = (
+                SELECT COUNT(*) FROM messages m
+                WHERE m.conversation_id = conversation_members.conversation_id
+                  AND m.created_at >= ?
+                  AND m.id > ?
+                  AND SUBSTRING(m.id, 7, 1) BETWEEN 0x70 AND 0x7F
+                  AND m.sender_id <> conversation_members.user_id),
+            last_read_message_id = ?,
+            last_read_at = ?
+        WHERE conversation_id = ? AND user_id = ?
+          AND (last_read_message_id IS NULL OR %s OR last_read_message_id < ?)
+        """.formatted(LEGACY_CURSOR);
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Moves the member's cursor forward to {@code messageId}. A receipt for a message at or before
+     * the current cursor changes nothing.
+     *
+     * @return whether the cursor moved
+     */
+    public boolean moveForward(UUID conversationId, UUID userId, UUID messageId, Instant readAt) {
+        Calendar utc = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+        // A legacy id sorts nowhere in particular, so it only positions the cursor before every time-ordered id
+        UUID position = IdGenerator.isTimeOrdered(messageId) ? messageId : new UUID(0L, 0L);
+        long positionMillis = IdGenerator.isTimeOrdered(messageId) ? IdGenerator.timestampOf(messageId) : 0L;
+        Timestamp countFrom = new Timestamp(Math.max(0L, positionMillis - ID_CLOCK_SLACK_MILLIS));
+        byte[] positionBytes = IdGenerator.toBytes(position);
+        return jdbcTemplate.update(MOVE_CURSOR_SQL, ps -> {
+            ps.setTimestamp(1, countFrom, utc);
+            ps.setBytes(2, positionBytes);
+            ps.setBytes(3, IdGenerator.toBytes(messageId));
+            ps.setTimestamp(4, Timestamp.from(readAt), utc);
+            ps.setBytes(5, IdGenerator.toBytes(conversationId));
+            ps.setBytes(6, IdGenerator.toBytes(userId));
+            ps.setBytes(7, positionBytes);
+        }) > 0;
+    }
+}
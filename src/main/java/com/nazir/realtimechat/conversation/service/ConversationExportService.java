@@ -0,0 +1,154 @@
+package com.nazir.realtimechat.conversation.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nazir.realtimechat.common.exception.UnauthorizedException;
+import com.nazir.realtimechat.common.util.IdGenerator;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCallback;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.util.Calendar;
+import java.util.Comparator;
+import java.util.TimeZone;
+import java.util.UUID;
+
+/**
+ * Writes a conversation's full history, archived and hot, as NDJSON, oldest first. Each tier is
+ * read along its (conversation_id, created_at, id) index through its own forward-only streaming
+ * result set, on its own connection, and the two are merged here as rows arrive. MySQL neither
+ * materializes nor sorts anything, and without entities or a persistence context memory here stays
+ * flat however long the conversation is.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ConversationExportService {
+
+    private static final String EXPORT_SQL = """
+        SELECT m.id, m.sender_id, u.username, m.content, m.status, m.created_at
+        FROM %s m JOIN users u ON u.id = m.sender_id
+        WHERE m.conversation_id = ?
+        ORDER BY m.created_at, m.id
+    """;
+
+    // Same order as the queries; BINARY(16) ids compare as unsigned bytes
+    private static final Comparator<ExportRow> OLDEST_FIRST = Comparator.comparing(ExportRow::createdAt)
+            .thenComparing(ExportRow::id, IdGenerator.BINARY_ORDER);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+    private final ConversationMembershipCache membershipCache;
+
+    public void checkAccess(UUID userId, UUID conversationId) {
+        if (!membershipCache.isMember(conversationId, userId)) {
+            log.warn("User {} attempted to export conversation {} without membership", userId, conversationId);
+            throw new UnauthorizedException("You are not a member of this conversation");
+        }
+    }
+
+    /**
+     * Streams every message of the conversation to {@code out}, one JSON object per line.
+     * The stream is flushed but not closed. Holds two pooled connections while it runs, since a
+     * streaming result set keeps its connection busy until it is read to the end.
+     *
+     * @return the number of messages written
+     */
+    public long export(UUID conversationId, OutputStream out) {
+        byte[] conversation = IdGenerator.toBytes(conversationId);
+        // Legacy messages are never archived, so the tiers overlap in time and must be merged
+        Long rows = jdbcTemplate.execute(streaming("messages_archive", conversation),
+                (PreparedStatementCallback<Long>) archive -> jdbcTemplate.execute(streaming("messages", conversation),
+                        (PreparedStatementCallback<Long>) hot -> write(archive, hot, conversationId, out)));
+        long written = rows != null ? rows : 0;
+        log.info("Exported {} messages of conversation {}", written, conversationId);
+        return written;
+    }
+
+    private static PreparedStatementCreator streaming(String table, byte[] conversation) {
+        return con -> {
+            PreparedStatement ps = con.prepareStatement(EXPORT_SQL.formatted(table),
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            // Connector/J streams rows one at a time instead of buffering the whole result set
+            ps.setFetchSize(Integer.MIN_VALUE);
+            ps.setBytes(1, conversation);
+            return ps;
+        };
+    }
+
+    private long write(PreparedStatement archive, PreparedStatement hot, UUID conversationId, OutputStream out)
+            throws SQLException {
+        Calendar utc = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+        String conversation = conversationId.toString();
+        ResultSet archived = archive.executeQuery();
+        try {
+            ResultSet current = hot.executeQuery();
+            try {
+                JsonGenerator json = objectMapper.getFactory().createGenerator(out)
+                        .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+                // Lines are terminated explicitly below
+                json.setRootValueSeparator(null);
+                long rows = 0;
+                ExportRow nextArchived = next(archived, utc);
+                ExportRow nextCurrent = next(current, utc);
+                while (nextArchived != null || nextCurrent != null) {
+                    if (nextCurrent == null || (nextArchived != null && OLDEST_FIRST.compare(nextArchived, nextCurrent) <= 0)) {
+                        writeRow(json, conversation, nextArchived);
+                        nextArchived = next(archived, utc);
+                    } else {
+                        writeRow(json, conversation, nextCurrent);
+                        nextCurrent = next(current, utc);
+                    }
+                    rows++;
+                }
+                json.close();
+                return rows;
+            } catch (IOException e) {
+                // The client went away. Closing a streaming result set reads it to the end, so stop the queries first
+                archive.cancel();
+                hot.cancel();
+                throw new UncheckedIOException(e);
+            } finally {
+                current.close();
+            }
+        } finally {
+            archived.close();
+        }
+    }
+
+    private static ExportRow next(ResultSet rs, Calendar utc) throws SQLException {
+        if (!rs.next()) {
+            return null;
+        }
+        return new ExportRow(IdGenerator.fromBytes(rs.getBytes("id")), IdGenerator.fromBytes(rs.getBytes("sender_id")),
+                rs.getString("username"), rs.getString("content"), rs.getString("status"),
+                rs.getTimestamp("created_at", utc).toInstant());
+    }
+
+    private static void writeRow(JsonGenerator json, String conversation, ExportRow row) throws IOException {
+        json.writeStartObject();
+        json.writeStringField("id", row.id().toString());
+        json.writeStringField("conversationId", conversation);
+        json.writeStringField("senderId", row.senderId().toString());
+        json.writeStringField("senderUsername", row.senderUsername());
+        json.writeStringField("content", row.content());
+        json.writeStringField("status", row.status());
+        json.writeStringField("createdAt", row.createdAt().toString());
+        json.writeEndObject();
+        json.writeRaw('\n');
+    }
+
+    private record ExportRow(UUID id, UUID senderId, String senderUsername, String content, String status,
+                             Instant createdAt) {
+    }
+}
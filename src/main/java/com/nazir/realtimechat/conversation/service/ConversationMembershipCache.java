@@ -0,0 +1,126 @@
+package com.nazir.realtimechat.conversation.service;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.nazir.realtimechat.conversation.repository.ConversationMemberRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Node-local cache of conversation member sets, used to authorize the message hot path
+ * without a membership query per call. Entries are bounded by size and TTL, and
+ * invalidations are broadcast over Redis pub/sub so every node drops its stale copy.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ConversationMembershipCache implements MessageListener {
+
+    private static final String INVALIDATION_CHANNEL = "chat:membership:invalidate";
+
+    private final ConversationMemberRepository conversationMemberRepository;
+    private final StringRedisTemplate redisTemplate;
+    private final RedisMessageListenerContainer listenerContainer;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${chat.membership-cache.max-conversations:100000}")
+    private long maxConversations;
+
+    @Value("${chat.membership-cache.ttl-minutes:10}")
+    private long ttlMinutes;
+
+    private AsyncCache<UUID, Set<UUID>> members;
+
+    @PostConstruct
+    void init() {
+        members = Caffeine.newBuilder()
+                .maximumSize(maxConversations)
+                .expireAfterWrite(Duration.ofMinutes(ttlMinutes))
+                .recordStats()
+                .buildAsync();
+        CaffeineCacheMetrics.monitor(meterRegistry, members, "conversationMembers");
+        listenerContainer.addMessageListener(this, new ChannelTopic(INVALIDATION_CHANNEL));
+    }
+
+    public boolean isMember(UUID conversationId, UUID userId) {
+        return getMembers(conversationId).contains(userId);
+    }
+
+    /**
+     * Concurrent misses for one conversation share a single query. The query runs outside the
+     * cache's internal lock, so on a virtual thread it does not pin the carrier while it waits.
+     */
+    public Set<UUID> getMembers(UUID conversationId) {
+        CompletableFuture<Set<UUID>> cached = members.getIfPresent(conversationId);
+        if (cached == null) {
+            CompletableFuture<Set<UUID>> loading = new CompletableFuture<>();
+            cached = members.asMap().putIfAbsent(conversationId, loading);
+            if (cached == null) {
+                try {
+                    loading.complete(conversationMemberRepository.findUserIdsByConversationId(conversationId));
+                } catch (RuntimeException e) {
+                    // A failed future is dropped from the cache, so the next call queries again
+                    loading.completeExceptionally(e);
+                    throw e;
+                }
+                cached = loading;
+            }
+        }
+        return cached.join();
+    }
+
+    /**
+     * Drops the cached member set on this node and on every other node. When called inside a
+     * transaction, the invalidation is deferred until commit so no node reloads the old membership.
+     */
+    public void invalidate(UUID conversationId) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    publishInvalidation(conversationId);
+                }
+            });
+        } else {
+            publishInvalidation(conversationId);
+        }
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        try {
+            members.synchronous().invalidate(UUID.fromString(body));
+        } catch (IllegalArgumentException e) {
+            log.warn("Ignoring malformed membership invalidation: {}", body);
+        }
+    }
+
+    private void publishInvalidation(UUID conversationId) {
+        members.synchronous().invalidate(conversationId);
+        try {
+            redisTemplate.convertAndSend(INVALIDATION_CHANNEL, conversationId.toString());
+        } catch (Exception e) {
+            // Other nodes fall back to the TTL
+            log.warn("Failed to publish membership invalidation for conversation {}: {}", conversationId, e.getMessage());
+        }
+    }
+}
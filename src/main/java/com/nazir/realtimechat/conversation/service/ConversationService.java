@@ -1,9 +1,13 @@
 package com.nazir.realtimechat.conversation.service;
 
+import com.nazir.realtimechat.common.dto.CursorPage;
+import com.nazir.realtimechat.common.exception.BadRequestException;
 import com.nazir.realtimechat.common.exception.ResourceNotFoundException;
+import com.nazir.realtimechat.common.util.CursorCodec;
 import com.nazir.realtimechat.conversation.dto.ConversationResponse;
 import com.nazir.realtimechat.conversation.entity.Conversation;
 import com.nazir.realtimechat.conversation.entity.ConversationMember;
+import com.nazir.realtimechat.conversation.repository.ConversationInboxRepository;
 import com.nazir.realtimechat.conversation.repository.ConversationMemberRepository;
 import com.nazir.realtimechat.conversation.repository.ConversationRepository;
 import com.nazir.realtimechat.user.dto.UserResponse;
@@ -15,9 +19,10 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
 import java.util.List;
 import java.util.UUID;
-import java.util.stream.Collectors;
 
 @Slf4j
 @Service
@@ -28,6 +33,8 @@ public class ConversationService {
     private final ConversationMemberRepository conversationMemberRepository;
     private final UserRepository userRepository;
     private final UserService userService;
+    private final ConversationMembershipCache membershipCache;
+    private final ConversationInboxRepository inboxRepository;
 
     @Transactional
     public ConversationResponse createDirectConversation(UUID currentUserId, UUID targetUserId) {
@@ -53,35 +60,48 @@ public class ConversationService {
                     // 3. Add members
                     conversationMemberRepository.save(new ConversationMember(conversation, currentUser));
                     conversationMemberRepository.save(new ConversationMember(conversation, targetUser));
+                    membershipCache.invalidate(conversation.getId());
 
                     log.info("Created new conversation with ID: {}", conversation.getId());
                     return mapToResponse(conversation, targetUserId);
                 });
     }
 
+    /**
+     * One page of the user's inbox, most recently active first.
+     */
     @Transactional(readOnly = true)
-    public List<ConversationResponse> getUserConversations(UUID userId) {
+    public CursorPage<ConversationResponse> getUserConversations(UUID userId, String cursor, int limit) {
         log.info("Fetching conversations for user: {}", userId);
-        List<ConversationMember> memberships = conversationMemberRepository.findByUserIdSorted(userId);
-        log.info("Found {} memberships for user {}", memberships.size(), userId);
-        
-        return memberships.stream()
-                .map(membership -> {
-                    Conversation conv = membership.getConversation();
-                    UUID otherParticipantId = findOtherParticipantIdFromMembers(conv.getId(), userId);
-                    log.info("Conversation {}: other participant is {}", conv.getId(), otherParticipantId);
-                    return mapToResponse(conv, otherParticipantId);
-                })
-                .collect(Collectors.toList());
-    }
+        Instant afterActivityAt = null;
+        UUID afterId = null;
+        if (cursor != null) {
+            String[] position = CursorCodec.decode(cursor, 2);
+            try {
+                afterActivityAt = Instant.parse(position[0]);
+                afterId = UUID.fromString(position[1]);
+            } catch (DateTimeParseException | IllegalArgumentException e) {
+                throw new BadRequestException("Invalid cursor");
+            }
+        }
 
-    private UUID findOtherParticipantIdFromMembers(UUID conversationId, UUID currentUserId) {
-        List<ConversationMember> members = conversationMemberRepository.findByConversationId(conversationId);
-        return members.stream()
-                .filter(m -> !m.getUser().getId().equals(currentUserId))
-                .map(m -> m.getUser().getId())
-                .findFirst()
-                .orElse(null);
+        List<ConversationInboxRepository.InboxRow> rows = inboxRepository.findInbox(userId, afterActivityAt, afterId, limit + 1);
+        boolean hasMore = rows.size() > limit;
+        if (hasMore) {
+            rows = rows.subList(0, limit);
+        }
+        log.info("Found {} conversations for user {}", rows.size(), userId);
+
+        String nextCursor = null;
+        if (hasMore) {
+            ConversationInboxRepository.InboxRow last = rows.get(rows.size() - 1);
+            nextCursor = CursorCodec.encode(last.activityAt().toString(), last.conversation().getId().toString());
+        }
+        return CursorPage.<ConversationResponse>builder()
+                .items(rows.stream().map(ConversationInboxRepository.InboxRow::conversation).toList())
+                .nextCursor(nextCursor)
+                .hasMore(hasMore)
+                .build();
     }
 
     private ConversationResponse mapToResponse(Conversation conversation, UUID otherUserId) {
@@ -0,0 +1,289 @@
+package com.nazir.realtimechat.message.archive;
+
+import com.nazir.realtimechat.common.util.IdGenerator;
+import com.nazir.realtimechat.message.dto.MessageResponse;
+import com.nazir.realtimechat.message.entity.Message;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Calendar;
+import java.util.List;
+import java.util.TimeZone;
+import java.util.UUID;
+
+/**
+ * The cold tier of message history: {@code messages_archive} has the columns of {@code messages},
+ * no foreign keys, and is range-partitioned by month on {@code created_at}, so old months can later
+ * be dropped or moved as whole partitions. History reads mirror the keyset scans of
+ * {@link com.nazir.realtimechat.message.repository.MessageRepository}.
+ * <p>
+ * Only messages with time-ordered ids are archived. Legacy messages stay in {@code messages} however
+ * old they are, so the two tiers overlap in time and readers merge them by {@code (created_at, id)}.
+ */
+@Slf4j
+@Repository
+@RequiredArgsConstructor
+public class MessageArchiveRepository {
+
+    private static final String CREATE_TABLE_SQL = """
+        CREATE TABLE IF NOT EXISTS messages_archive (
+            id BINARY(16) NOT NULL,
+            conversation_id BINARY(16) NOT NULL,
+            sender_id BINARY(16) NOT NULL,
+            content TEXT NOT NULL,
+            status VARCHAR(20) NOT NULL,
+            created_by VARCHAR(50),
+            created_at DATETIME(6) NOT NULL,
+            updated_by VARCHAR(50),
+            updated_at DATETIME(6),
+            PRIMARY KEY (id, created_at),
+            KEY idx_msg_archive_conv_created_id (conversation_id, created_at, id)
+        )
+        PARTITION BY RANGE COLUMNS (created_at) (PARTITION pmax VALUES LESS THAN (MAXVALUE))
+    """;
+
+    private static final String HIGHEST_PARTITION_SQL = """
+        SELECT PARTITION_DESCRIPTION FROM information_schema.PARTITIONS
+        WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'messages_archive'
+          AND PARTITION_DESCRIPTION <> 'MAXVALUE'
+        ORDER BY PARTITION_ORDINAL_POSITION DESC
+        LIMIT 1
+    """;
+
+    // pmax is always empty when split, since months are added ahead of the rows that need them
+    private static final String ADD_PARTITION_SQL = """
+        ALTER TABLE messages_archive REORGANIZE PARTITION pmax INTO (
+            PARTITION %s VALUES LESS THAN ('%s'),
+            PARTITION pmax VALUES LESS THAN (MAXVALUE))
+    """;
+
+    // Chunks are primary key ranges, which only hold creation order for version 7 ids (version in byte 7's
+    // high nibble). Random legacy ids fall anywhere in a range, so every statement leaves them out.
+    private static final String TIME_ORDERED_ID = "SUBSTRING(id, 7, 1) BETWEEN 0x70 AND 0x7F";
+
+    private static final String FIRST_CHUNK_SQL = """
+        SELECT id, created_at FROM messages
+        WHERE id < ? AND created_at < ? AND %s
+        ORDER BY id LIMIT ?
+    """.formatted(TIME_ORDERED_ID);
+
+    private static final String NEXT_CHUNK_SQL = """
+        SELECT id, created_at FROM messages
+        WHERE id > ? AND id < ? AND created_at < ? AND %s
+        ORDER BY id LIMIT ?
+    """.formatted(TIME_ORDERED_ID);
+
+    // ON DUPLICATE KEY makes a chunk retried after a lost commit acknowledgement harmless
+    private static final String COPY_CHUNK_SQL = """
+        INSERT INTO messages_archive (id, conversation_id, sender_id, content, status, created_by, created_at, updated_by, updated_at)
+        SELECT id, conversation_id, sender_id, content, status, created_by, created_at, updated_by, updated_at
+        FROM messages
+        WHERE id >= ? AND id <= ? AND created_at < ? AND %s
+        ON DUPLICATE KEY UPDATE messages_archive.id = messages_archive.id
+    """.formatted(TIME_ORDERED_ID);
+
+    private static final String DELETE_CHUNK_SQL = """
+        DELETE FROM messages
+        WHERE id >= ? AND id <= ? AND created_at < ? AND %s
+    """.formatted(TIME_ORDERED_ID);
+
+    private static final String COLUMNS = "id, conversation_id, sender_id, content, status, created_at";
+
+    private static final String LATEST_SQL = """
+        SELECT %s FROM messages_archive
+        WHERE conversation_id = ?
+        ORDER BY created_at DESC, id DESC
+        LIMIT ?
+    """.formatted(COLUMNS);
+
+    private static final String BEFORE_SQL = """
+        SELECT %s FROM messages_archive
+        WHERE conversation_id = ?
+          AND created_at <= ?
+          AND (created_at < ? OR id < ?)
+        ORDER BY created_at DESC, id DESC
+        LIMIT ?
+    """.formatted(COLUMNS);
+
+    private static final String EARLIEST_SQL = """
+        SELECT %s FROM messages_archive
+        WHERE conversation_id = ?
+        ORDER BY created_at ASC, id ASC
+        LIMIT ?
+    """.formatted(COLUMNS);
+
+    private static final String AFTER_SQL = """
+        SELECT %s FROM messages_archive
+        WHERE conversation_id = ?
+          AND created_at >= ?
+          AND (created_at > ? OR id > ?)
+        ORDER BY created_at ASC, id ASC
+        LIMIT ?
+    """.formatted(COLUMNS);
+
+    private static final DateTimeFormatter PARTITION_NAME = DateTimeFormatter.ofPattern("'p'yyyyMM");
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    // Exclusive upper bound of the newest monthly partition, null while only pmax exists.
+    // Another node may add partitions too, so it is reloaded at the start of every run.
+    private LocalDate partitionedUntil;
+
+    @PostConstruct
+    void createTable() {
+        jdbcTemplate.execute(CREATE_TABLE_SQL);
+    }
+
+    /**
+     * Reloads the partition layout, which another node may have changed since this one last archived.
+     */
+    public synchronized void refreshPartitions() {
+        partitionedUntil = loadPartitionedUntil();
+    }
+
+    /**
+     * The next {@code limit} hot messages with time-ordered ids created before {@code cutoff}, in primary key order,
+     * after {@code after} (null to start from the beginning) and below {@code bound}.
+     */
+    public List<ArchiveCandidate> nextChunk(UUID after, UUID bound, Instant cutoff, int limit) {
+        Calendar utc = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+        Timestamp before = Timestamp.from(cutoff);
+        return after == null
+                ? jdbcTemplate.query(FIRST_CHUNK_SQL, ps -> {
+                    ps.setBytes(1, IdGenerator.toBytes(bound));
+                    ps.setTimestamp(2, before, utc);
+                    ps.setInt(3, limit);
+                }, (rs, rowNum) -> candidate(rs, utc))
+                : jdbcTemplate.query(NEXT_CHUNK_SQL, ps -> {
+                    ps.setBytes(1, IdGenerator.toBytes(after));
+                    ps.setBytes(2, IdGenerator.toBytes(bound));
+                    ps.setTimestamp(3, before, utc);
+                    ps.setInt(4, limit);
+                }, (rs, rowNum) -> candidate(rs, utc));
+    }
+
+    /**
+     * Copies the chunk into the archive and deletes it from {@code messages} in one short transaction.
+     *
+     * @return the number of messages moved
+     */
+    public int move(List<ArchiveCandidate> chunk, Instant cutoff) {
+        Instant newest = chunk.stream().map(ArchiveCandidate::createdAt).max(Instant::compareTo).orElse(cutoff);
+        ensurePartitionFor(newest);
+        Calendar utc = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+        byte[] first = IdGenerator.toBytes(chunk.get(0).id());
+        byte[] last = IdGenerator.toBytes(chunk.get(chunk.size() - 1).id());
+        Timestamp before = Timestamp.from(cutoff);
+        Integer moved = transactionTemplate.execute(status -> {
+            jdbcTemplate.update(COPY_CHUNK_SQL, ps -> {
+                ps.setBytes(1, first);
+                ps.setBytes(2, last);
+                ps.setTimestamp(3, before, utc);
+            });
+            return jdbcTemplate.update(DELETE_CHUNK_SQL, ps -> {
+                ps.setBytes(1, first);
+                ps.setBytes(2, last);
+                ps.setTimestamp(3, before, utc);
+            });
+        });
+        return moved != null ? moved : 0;
+    }
+
+    public List<MessageResponse> findLatest(UUID conversationId, int limit) {
+        Calendar utc = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+        return jdbcTemplate.query(LATEST_SQL, (rs, rowNum) -> mapRow(rs, utc), IdGenerator.toBytes(conversationId), limit);
+    }
+
+    public List<MessageResponse> findBefore(UUID conversationId, Instant createdAt, UUID id, int limit) {
+        return findFrom(BEFORE_SQL, conversationId, createdAt, id, limit);
+    }
+
+    public List<MessageResponse> findEarliest(UUID conversationId, int limit) {
+        Calendar utc = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+        return jdbcTemplate.query(EARLIEST_SQL, (rs, rowNum) -> mapRow(rs, utc), IdGenerator.toBytes(conversationId), limit);
+    }
+
+    public List<MessageResponse> findAfter(UUID conversationId, Instant createdAt, UUID id, int limit) {
+        return findFrom(AFTER_SQL, conversationId, createdAt, id, limit);
+    }
+
+    private List<MessageResponse> findFrom(String sql, UUID conversationId, Instant createdAt, UUID id, int limit) {
+        Calendar utc = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+        Timestamp position = Timestamp.from(createdAt);
+        return jdbcTemplate.query(sql, ps -> {
+            ps.setBytes(1, IdGenerator.toBytes(conversationId));
+            ps.setTimestamp(2, position, utc);
+            ps.setTimestamp(3, position, utc);
+            ps.setBytes(4, IdGenerator.toBytes(id));
+            ps.setInt(5, limit);
+        }, (rs, rowNum) -> mapRow(rs, utc));
+    }
+
+    /**
+     * Splits monthly partitions off pmax until one covers {@code createdAt}'s month. If a split
+     * fails because another node has split pmax in the meantime, the layout is reloaded and the
+     * split retried from there.
+     */
+    private synchronized void ensurePartitionFor(Instant createdAt) {
+        LocalDate month = createdAt.atZone(ZoneOffset.UTC).toLocalDate().withDayOfMonth(1);
+        LocalDate until = partitionedUntil != null ? partitionedUntil : loadPartitionedUntil();
+        while (until == null || !month.isBefore(until)) {
+            LocalDate from = until != null ? until : month;
+            LocalDate next = from.plusMonths(1);
+            try {
+                jdbcTemplate.execute(ADD_PARTITION_SQL.formatted(PARTITION_NAME.format(from), next));
+            } catch (DataAccessException e) {
+                LocalDate reloaded = loadPartitionedUntil();
+                if (reloaded == null || (until != null && !reloaded.isAfter(until))) {
+                    throw e;
+                }
+                log.info("Archive partitions were extended elsewhere, now up to {}", reloaded);
+                until = reloaded;
+                continue;
+            }
+            log.info("Added archive partition {} for messages before {}", PARTITION_NAME.format(from), next);
+            until = next;
+        }
+        partitionedUntil = until;
+    }
+
+    private LocalDate loadPartitionedUntil() {
+        List<String> bounds = jdbcTemplate.queryForList(HIGHEST_PARTITION_SQL, String.class);
+        if (bounds.isEmpty()) {
+            return null;
+        }
+        // Reported as a quoted literal, e.g. '2026-02-01 00:00:00'
+        return LocalDate.parse(bounds.get(0).replace("'", "").substring(0, 10));
+    }
+
+    private static ArchiveCandidate candidate(ResultSet rs, Calendar utc) throws SQLException {
+        return new ArchiveCandidate(IdGenerator.fromBytes(rs.getBytes("id")), rs.getTimestamp("created_at", utc).toInstant());
+    }
+
+    static MessageResponse mapRow(ResultSet rs, Calendar utc) throws SQLException {
+        return MessageResponse.builder()
+                .id(IdGenerator.fromBytes(rs.getBytes("id")))
+                .conversationId(IdGenerator.fromBytes(rs.getBytes("conversation_id")))
+                .senderId(IdGenerator.fromBytes(rs.getBytes("sender_id")))
+                .content(rs.getString("content"))
+                .status(Message.MessageStatus.valueOf(rs.getString("status")))
+                .createdAt(rs.getTimestamp("created_at", utc).toInstant())
+                .build();
+    }
+
+    public record ArchiveCandidate(UUID id, Instant createdAt) {
+    }
+}
@@ -0,0 +1,175 @@
+package com.nazir.realtimechat.message.archive;
+
+import com.nazir.realtimechat.common.util.IdGenerator;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Moves messages older than {@code chat.archive.after-days} from {@code messages} into the archive,
+ * oldest first, one short transaction per chunk. Chunks are primary key ranges of version 7 ids,
+ * which sort by creation time, so nothing scans or locks beyond the rows being moved. Messages with
+ * legacy random ids are excluded from every chunk statement and are never archived; history reads
+ * merge the tiers, so they still page in order. After each chunk the job pauses at least as long as
+ * the chunk took, keeping it to half the database time it could take. One node runs it at a time,
+ * under a Redis lock that is renewed after each chunk and only released or renewed by its owner.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class MessageArchiver {
+
+    private static final String LOCK_KEY = "chat:message-archive:lock";
+    private static final Duration LOCK_TTL = Duration.ofMinutes(5);
+
+    // Deletes KEYS[1] only if it still holds ARGV[1], the owner's token
+    private static final RedisScript<Long> RELEASE_SCRIPT = new DefaultRedisScript<>("""
+            if redis.call('GET', KEYS[1]) == ARGV[1] then
+                return redis.call('DEL', KEYS[1])
+            end
+            return 0
+            """, Long.class);
+
+    // Resets KEYS[1]'s TTL to ARGV[2] milliseconds only if it still holds ARGV[1]
+    private static final RedisScript<Long> RENEW_SCRIPT = new DefaultRedisScript<>("""
+            if redis.call('GET', KEYS[1]) == ARGV[1] then
+                return redis.call('PEXPIRE', KEYS[1], ARGV[2])
+            end
+            return 0
+            """, Long.class);
+
+    private final MessageArchiveRepository archiveRepository;
+    private final StringRedisTemplate redisTemplate;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${chat.archive.enabled:true}")
+    private boolean enabled;
+
+    @Value("${chat.archive.after-days:90}")
+    private long afterDays;
+
+    @Value("${chat.archive.run-interval-ms:3600000}")
+    private long runIntervalMs;
+
+    @Value("${chat.archive.chunk-size:500}")
+    private int chunkSize;
+
+    @Value("${chat.archive.chunk-pause-ms:200}")
+    private long chunkPauseMs;
+
+    @Value("${chat.archive.max-rows-per-run:200000}")
+    private long maxRowsPerRun;
+
+    private ScheduledExecutorService executor;
+    private Counter archivedCounter;
+    private Timer chunkTimer;
+
+    @PostConstruct
+    void start() {
+        archivedCounter = meterRegistry.counter("chat.messages.archived");
+        chunkTimer = Timer.builder("chat.messages.archive.chunk")
+                .description("Time taken to move one chunk of messages into the archive")
+                .register(meterRegistry);
+        if (!enabled) {
+            return;
+        }
+        // Own thread: a throttled run can take minutes and must not hold up the shared scheduler
+        executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "message-archiver");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleWithFixedDelay(this::run, runIntervalMs, runIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void stop() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Archives up to {@code max-rows-per-run} messages unless another node holds the lock.
+     */
+    public void run() {
+        String owner = UUID.randomUUID().toString();
+        try {
+            if (!Boolean.TRUE.equals(redisTemplate.opsForValue().setIfAbsent(LOCK_KEY, owner, LOCK_TTL))) {
+                log.debug("Message archiving is running on another node");
+                return;
+            }
+        } catch (Exception e) {
+            log.warn("Skipping message archiving, lock unavailable: {}", e.getMessage());
+            return;
+        }
+        try {
+            archive(owner);
+        } catch (Exception e) {
+            // Each chunk commits on its own, so the next run simply picks up where this one stopped
+            log.error("Message archiving stopped: {}", e.getMessage());
+        } finally {
+            try {
+                redisTemplate.execute(RELEASE_SCRIPT, List.of(LOCK_KEY), owner);
+            } catch (Exception e) {
+                log.warn("Failed to release the message archiving lock: {}", e.getMessage());
+            }
+        }
+    }
+
+    private void archive(String owner) {
+        archiveRepository.refreshPartitions();
+        Instant cutoff = Instant.now().minus(Duration.ofDays(afterDays));
+        UUID bound = IdGenerator.lowestIdAt(cutoff.toEpochMilli());
+        UUID after = null;
+        long moved = 0;
+        while (moved < maxRowsPerRun) {
+            long started = System.nanoTime();
+            List<MessageArchiveRepository.ArchiveCandidate> chunk = archiveRepository.nextChunk(after, bound, cutoff, chunkSize);
+            if (chunk.isEmpty()) {
+                break;
+            }
+            int rows = archiveRepository.move(chunk, cutoff);
+            long elapsedNanos = System.nanoTime() - started;
+            chunkTimer.record(elapsedNanos, TimeUnit.NANOSECONDS);
+            archivedCounter.increment(rows);
+            moved += rows;
+            after = chunk.get(chunk.size() - 1).id();
+            if (!Long.valueOf(1).equals(redisTemplate.execute(RENEW_SCRIPT, List.of(LOCK_KEY), owner,
+                    String.valueOf(LOCK_TTL.toMillis())))) {
+                // The lock expired and another node may hold it now; it carries on from here
+                log.warn("Lost the message archiving lock, stopping after {} messages", moved);
+                break;
+            }
+            if (chunk.size() < chunkSize) {
+                break;
+            }
+            try {
+                Thread.sleep(Math.max(chunkPauseMs, TimeUnit.NANOSECONDS.toMillis(elapsedNanos)));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        if (moved > 0) {
+            log.info("Archived {} messages created before {}", moved, cutoff);
+        }
+    }
+}
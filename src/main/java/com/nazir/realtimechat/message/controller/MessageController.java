@@ -1,23 +1,21 @@
 package com.nazir.realtimechat.message.controller;
 
+import com.nazir.realtimechat.auth.security.AuthenticatedUser;
 import com.nazir.realtimechat.common.dto.ApiResponse;
+import com.nazir.realtimechat.common.dto.CursorPage;
+import com.nazir.realtimechat.message.dto.HistoryDirection;
 import com.nazir.realtimechat.message.dto.MessageRequest;
 import com.nazir.realtimechat.message.dto.MessageResponse;
+import com.nazir.realtimechat.message.search.MessageSearchService;
 import com.nazir.realtimechat.message.service.MessageService;
-import com.nazir.realtimechat.user.entity.User;
-import com.nazir.realtimechat.user.repository.UserRepository;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
-import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.web.bind.annotation.*;
 
-import java.time.Instant;
 import java.time.LocalDateTime;
-import java.util.List;
 import java.util.UUID;
 
 @Slf4j
@@ -26,14 +24,15 @@ import java.util.UUID;
 @RequiredArgsConstructor
 public class MessageController {
 
+    private static final int MAX_PAGE_SIZE = 100;
+
     private final MessageService messageService;
-    private final UserRepository userRepository;
+    private final MessageSearchService messageSearchService;
 
     @PostMapping
-    public ResponseEntity<ApiResponse<MessageResponse>> sendMessage(@AuthenticationPrincipal UserDetails userDetails, @Valid @RequestBody MessageRequest request) {
-        log.info("Request to send message from user {} to conversation {}", userDetails.getUsername(), request.getConversationId());
-        User currentUser = userRepository.findByUsername(userDetails.getUsername()).orElseThrow();
-        MessageResponse response = messageService.sendMessage(currentUser.getId(), request);
+    public ResponseEntity<ApiResponse<MessageResponse>> sendMessage(@AuthenticationPrincipal AuthenticatedUser currentUser, @Valid @RequestBody MessageRequest request) {
+        log.info("Request to send message from user {} to conversation {}", currentUser.getUsername(), request.getConversationId());
+        MessageResponse response = messageService.sendMessage(currentUser, request);
         return ResponseEntity.ok(ApiResponse.<MessageResponse>builder()
                 .success(true)
                 .data(response)
@@ -43,19 +42,40 @@ public class MessageController {
     }
 
     @GetMapping
-    public ResponseEntity<ApiResponse<List<MessageResponse>>> getMessages(
-            @AuthenticationPrincipal UserDetails userDetails, @RequestParam UUID conversationId,
-            @RequestParam(required = false) Instant before, @RequestParam(defaultValue = "20") int limit) {
-
-        log.info("Request to fetch messages for conversation {} by user {}", conversationId, userDetails.getUsername());
-        User currentUser = userRepository.findByUsername(userDetails.getUsername()).orElseThrow();
-        List<MessageResponse> messages = messageService.getMessages(currentUser.getId(), conversationId, before, limit);
-        
-        return ResponseEntity.ok(ApiResponse.<List<MessageResponse>>builder()
+    public ResponseEntity<ApiResponse<CursorPage<MessageResponse>>> getMessages(
+            @AuthenticationPrincipal AuthenticatedUser currentUser, @RequestParam UUID conversationId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "BEFORE") HistoryDirection direction,
+            @RequestParam(defaultValue = "20") int limit) {
+
+        log.info("Request to fetch messages for conversation {} by user {}", conversationId, currentUser.getUsername());
+        CursorPage<MessageResponse> messages = messageService.getMessages(currentUser.getUserId(), conversationId,
+                cursor, direction, Math.min(Math.max(limit, 1), MAX_PAGE_SIZE));
+
+        return ResponseEntity.ok(ApiResponse.<CursorPage<MessageResponse>>builder()
                 .success(true)
                 .data(messages)
                 .message("Messages fetched successfully")
                 .timestamp(LocalDateTime.now())
                 .build());
     }
+
+    @GetMapping("/search")
+    public ResponseEntity<ApiResponse<CursorPage<MessageResponse>>> searchMessages(
+            @AuthenticationPrincipal AuthenticatedUser currentUser, @RequestParam String q,
+            @RequestParam(required = false) UUID conversationId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int limit) {
+
+        log.info("Request to search messages by user {}", currentUser.getUsername());
+        CursorPage<MessageResponse> results = messageSearchService.search(currentUser.getUserId(), q, conversationId,
+                cursor, Math.min(Math.max(limit, 1), MAX_PAGE_SIZE));
+
+        return ResponseEntity.ok(ApiResponse.<CursorPage<MessageResponse>>builder()
+                .success(true)
+                .data(results)
+                .message("Messages searched successfully")
+                .timestamp(LocalDateTime.now())
+                .build());
+    }
 }
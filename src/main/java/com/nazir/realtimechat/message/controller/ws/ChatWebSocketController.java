@@ -1,18 +1,38 @@
 package com.nazir.realtimechat.message.controller.ws;
 
+import com.fasterxml.jackson.annotation.JsonFormat;
+import com.nazir.realtimechat.auth.security.AuthenticatedUser;
+import com.nazir.realtimechat.common.constants.BrokerHeaderConstants;
+import com.nazir.realtimechat.common.exception.ServiceUnavailableException;
+import com.nazir.realtimechat.common.exception.UnauthorizedException;
+import com.nazir.realtimechat.message.dto.ConversationReplay;
+import com.nazir.realtimechat.message.dto.MessageAck;
 import com.nazir.realtimechat.message.dto.MessageRequest;
-import com.nazir.realtimechat.message.dto.MessageResponse;
+import com.nazir.realtimechat.message.dto.ReadCursor;
+import com.nazir.realtimechat.message.dto.ReadRequest;
 import com.nazir.realtimechat.message.dto.TypingRequest;
+import com.nazir.realtimechat.message.pipeline.PendingMessage;
+import com.nazir.realtimechat.message.replay.ReplayService;
+import com.nazir.realtimechat.message.service.MessageMetrics;
 import com.nazir.realtimechat.message.service.MessageService;
-import com.nazir.realtimechat.user.entity.User;
-import com.nazir.realtimechat.user.repository.UserRepository;
+import com.nazir.realtimechat.message.typing.TypingIndicatorEngine;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import java.security.Principal;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
 import org.springframework.messaging.handler.annotation.MessageMapping;
 import org.springframework.messaging.handler.annotation.Payload;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.annotation.SubscribeMapping;
 import org.springframework.stereotype.Controller;
 
 @Slf4j
@@ -20,54 +40,120 @@ import org.springframework.stereotype.Controller;
 @RequiredArgsConstructor
 public class ChatWebSocketController {
 
+    private static final String ACK_DESTINATION = "/queue/acks";
+
     private final MessageService messageService;
+    private final ReplayService replayService;
+    private final TypingIndicatorEngine typingEngine;
     private final SimpMessagingTemplate messagingTemplate;
-    private final UserRepository userRepository;
+    private final Validator validator;
+    private final MessageMetrics messageMetrics;
+
+    /**
+     * Reconnect catch-up: replies once, straight to the subscribing session, with the messages
+     * missed since the cursors sent in the CONNECT frame's resume header.
+     * Destination: /app/chat.replay
+     */
+    @SubscribeMapping("/chat.replay")
+    public List<ConversationReplay> handleReplay(Principal principal, SimpMessageHeaderAccessor headerAccessor) {
+        AuthenticatedUser currentUser = AuthenticatedUser.from(principal);
+        Map<String, Object> sessionAttributes = headerAccessor.getSessionAttributes();
+        String resume = sessionAttributes != null ? (String) sessionAttributes.remove(ReplayService.RESUME_ATTRIBUTE) : null;
+        log.info("Replay requested by user {}", currentUser.getUsername());
+        return replayService.replay(currentUser.getUserId(), resume);
+    }
 
     /**
      * Handles real-time messages sent via WebSocket.
      * Destination: /app/chat.send
      * Broadcasts to: /topic/conversation.{conversationId}
+     * Acks to: /user/queue/acks (the sending session only), once the message is saved or rejected
      */
     @MessageMapping("/chat.send")
-    public void handleMessage(Principal principal, @Payload MessageRequest request) {
-        log.info("WebSocket message received from {} for conversation {}", 
+    public void handleMessage(Principal principal, SimpMessageHeaderAccessor headerAccessor, @Payload MessageRequest request) {
+        log.info("WebSocket message received from {} for conversation {}",
                 principal.getName(), request.getConversationId());
+        String sessionId = headerAccessor.getSessionId();
+        String clientMessageId = request.getClientMessageId();
 
-        try {
-            // 1. Find the current user
-            User currentUser = userRepository.findByUsername(principal.getName()).orElseThrow(() -> new RuntimeException("User not found"));
-
-            // 2. Save message via service
-            MessageResponse response = messageService.sendMessage(currentUser.getId(), request);
+        // 1. Resolve the current user from the CONNECT principal
+        AuthenticatedUser currentUser = AuthenticatedUser.from(principal);
 
-            // 3. Broadcast to the conversation topic
-            String topic = "/topic/conversation." + request.getConversationId();
-            messagingTemplate.convertAndSend(topic, response);
-            log.info("Message broadcasted to topic: {}", topic);
+        Set<ConstraintViolation<MessageRequest>> violations = validator.validate(request);
+        if (!violations.isEmpty()) {
+            sendAck(sessionId, MessageAck.failed(clientMessageId, MessageAck.ErrorCode.INVALID_REQUEST,
+                    violations.iterator().next().getMessage()));
+            return;
+        }
 
+        try {
+            // 2. Hand the message to the write-behind pipeline; retries of a known clientMessageId get the original
+            MessageService.Submission submission = messageService.submitMessage(currentUser, request);
+            PendingMessage pending = submission.pending();
+            pending.persisted().whenComplete((saved, ex) -> {
+                if (ex != null) {
+                    log.error("Message {} was broadcast but could not be persisted: {}", pending.message().getId(), ex.getMessage());
+                    sendAck(sessionId, MessageAck.failed(clientMessageId, MessageAck.ErrorCode.PERSISTENCE_FAILED,
+                            "Message could not be saved, please retry"));
+                } else {
+                    sendAck(sessionId, MessageAck.persisted(clientMessageId, saved));
+                }
+            });
+
+            // 3. Broadcast to the conversation topic without waiting for the database
+            if (!submission.duplicate()) {
+                String topic = "/topic/conversation." + request.getConversationId();
+                long broadcastStarted = System.nanoTime();
+                messagingTemplate.convertAndSend(topic, pending.message(),
+                        Map.of(BrokerHeaderConstants.MESSAGE_ID_HEADER, pending.message().getId().toString()));
+                messageMetrics.recordSince(MessageMetrics.SEND, MessageMetrics.BROADCAST, broadcastStarted);
+                log.info("Message broadcasted to topic: {}", topic);
+            }
+
+        } catch (UnauthorizedException e) {
+            sendAck(sessionId, MessageAck.failed(clientMessageId, MessageAck.ErrorCode.NOT_A_MEMBER, e.getMessage()));
+        } catch (ServiceUnavailableException e) {
+            sendAck(sessionId, MessageAck.failed(clientMessageId, MessageAck.ErrorCode.OVERLOADED, e.getMessage()));
         } catch (Exception e) {
             log.error("Failed to process WebSocket message: {}", e.getMessage());
+            sendAck(sessionId, MessageAck.failed(clientMessageId, MessageAck.ErrorCode.INTERNAL_ERROR,
+                    "Message could not be processed"));
         }
     }
 
     /**
-     * Handles read receipts.
+     * Handles read receipts. The payload names the newest message the client displayed.
      * Destination: /app/chat.read
      */
     @MessageMapping("/chat.read")
-    public void handleReadReceipt(Principal principal, @Payload UUID conversationId) {
-        log.info("Read receipt received from {} for conversation {}", principal.getName(), conversationId);
-        
-        try {
-            User currentUser = userRepository.findByUsername(principal.getName()).orElseThrow(() -> new RuntimeException("User not found"));
+    public void handleReadReceipt(Principal principal, @Payload ReadRequest request) {
+        log.info("Read receipt received from {} for conversation {}", principal.getName(), request.getConversationId());
 
-            // 1. Mark as read in DB
-            messageService.markAsRead(currentUser.getId(), conversationId);
-
-            // 2. Broadcast read event to the topic
+        try {
+            Set<ConstraintViolation<ReadRequest>> violations = validator.validate(request);
+            if (!violations.isEmpty()) {
+                log.warn("Rejected read receipt from {}: {}", principal.getName(), violations.iterator().next().getMessage());
+                return;
+            }
+            AuthenticatedUser currentUser = AuthenticatedUser.from(principal);
+            UUID conversationId = request.getConversationId();
+
+            // 1. Move the read cursor in DB (timed here so the commit is included)
+            long started = System.nanoTime();
+            Optional<ReadCursor> moved = messageService.markAsRead(currentUser.getUserId(), conversationId,
+                    request.getLastReadMessageId());
+            messageMetrics.recordSince(MessageMetrics.READ, MessageMetrics.DB, started);
+            if (moved.isEmpty()) {
+                return;
+            }
+            ReadCursor cursor = moved.get();
+
+            // 2. Broadcast the new cursor position to the topic
             String topic = "/topic/conversation." + conversationId;
-            messagingTemplate.convertAndSend(topic, new ReadReceipt(conversationId, currentUser.getId()));
+            long broadcastStarted = System.nanoTime();
+            messagingTemplate.convertAndSend(topic, new ReadReceipt(cursor),
+                    Map.of(BrokerHeaderConstants.COALESCE_KEY_HEADER, "read:" + conversationId + ":" + cursor.getUserId()));
+            messageMetrics.recordSince(MessageMetrics.READ, MessageMetrics.BROADCAST, broadcastStarted);
             log.info("Read receipt broadcasted to topic: {}", topic);
 
         } catch (Exception e) {
@@ -76,48 +162,46 @@ public class ChatWebSocketController {
     }
 
     /**
-     * Handles typing indicators.
+     * Handles typing indicators. Only updates in-memory state; changes are broadcast to
+     * /topic/conversation.{conversationId} in batches by the typing engine.
      * Destination: /app/chat.typing
      */
     @MessageMapping("/chat.typing")
     public void handleTyping(Principal principal, @Payload TypingRequest request) {
-        log.info("Typing event received from {} for conversation {}: {}", 
+        log.debug("Typing event received from {} for conversation {}: {}",
                 principal.getName(), request.getConversationId(), request.isTyping());
-        
+
         try {
-            User currentUser = userRepository.findByUsername(principal.getName()).orElseThrow(() -> new RuntimeException("User not found"));
-            
-            String topic = "/topic/conversation." + request.getConversationId();
-            messagingTemplate.convertAndSend(topic, new TypingEvent(request.getConversationId(), currentUser.getId(), request.isTyping()));
-            
+            AuthenticatedUser currentUser = AuthenticatedUser.from(principal);
+            if (request.getConversationId() != null) {
+                typingEngine.record(request.getConversationId(), currentUser.getUserId(), request.isTyping());
+            }
         } catch (Exception e) {
-            log.error("Failed to process typing event: {}", e.getMessage());
+            log.warn("Failed to process typing event: {}", e.getMessage());
         }
     }
 
+    private void sendAck(String sessionId, MessageAck ack) {
+        SimpMessageHeaderAccessor headers = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        headers.setSessionId(sessionId);
+        headers.setLeaveMutable(true);
+        messagingTemplate.convertAndSendToUser(sessionId, ACK_DESTINATION, ack, headers.getMessageHeaders());
+    }
+
     @lombok.Data
     public static class ReadReceipt {
         private UUID conversationId;
         private UUID readerId;
+        private UUID lastReadMessageId;
+        @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "yyyy-MM-dd'T'HH:mm:ss.SSSZ", timezone = "UTC")
+        private Instant lastReadAt;
         private String type = "READ_RECEIPT";
 
-        public ReadReceipt(UUID conversationId, UUID readerId) {
-            this.conversationId = conversationId;
-            this.readerId = readerId;
-        }
-    }
-
-    @lombok.Data
-    public static class TypingEvent {
-        private UUID conversationId;
-        private UUID userId;
-        private boolean isTyping;
-        private String type = "TYPING";
-
-        public TypingEvent(UUID conversationId, UUID userId, boolean isTyping) {
-            this.conversationId = conversationId;
-            this.userId = userId;
-            this.isTyping = isTyping;
+        public ReadReceipt(ReadCursor cursor) {
+            this.conversationId = cursor.getConversationId();
+            this.readerId = cursor.getUserId();
+            this.lastReadMessageId = cursor.getLastReadMessageId();
+            this.lastReadAt = cursor.getLastReadAt();
         }
     }
 }
@@ -0,0 +1,29 @@
+package com.nazir.realtimechat.message.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Messages of one conversation missed since the client's last-seen message, oldest first.
+ * When {@code hasMore} is set, the rest is fetched from {@code GET /api/messages} with
+ * {@code direction=AFTER} and {@code nextCursor}. When {@code resync} is set instead, the last-seen
+ * message could not be located, so the client should drop its copy of the conversation and reload
+ * the newest page.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ConversationReplay {
+
+    private UUID conversationId;
+    private List<MessageResponse> items;
+    private String nextCursor;
+    private boolean hasMore;
+    private boolean resync;
+}
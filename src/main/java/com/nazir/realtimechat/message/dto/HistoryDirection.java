@@ -0,0 +1,11 @@
+package com.nazir.realtimechat.message.dto;
+
+/**
+ * Direction of a message history page relative to its cursor.
+ */
+public enum HistoryDirection {
+    /** Older messages, newest first: scrolling back through history. */
+    BEFORE,
+    /** Newer messages, oldest first: catching up after a reconnect. */
+    AFTER
+}
@@ -0,0 +1,67 @@
+package com.nazir.realtimechat.message.dto;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * Outcome of a {@code /app/chat.send}, pushed to the sending session on {@code /user/queue/acks}.
+ * Correlated with the request by {@code clientMessageId}.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class MessageAck {
+
+    private String clientMessageId;
+    private Status status;
+    private UUID messageId;
+    private UUID conversationId;
+    @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "yyyy-MM-dd'T'HH:mm:ss.SSSZ", timezone = "UTC")
+    private Instant createdAt;
+    private ErrorCode errorCode;
+    private String error;
+    @Builder.Default
+    private String type = "ACK";
+
+    public enum Status {
+        PERSISTED, FAILED
+    }
+
+    public enum ErrorCode {
+        /** The request failed validation; do not retry unchanged. */
+        INVALID_REQUEST,
+        /** The sender is not a member of the conversation. */
+        NOT_A_MEMBER,
+        /** The server is shedding load; retry with the same clientMessageId. */
+        OVERLOADED,
+        /** The message was accepted but could not be saved; retry with the same clientMessageId. */
+        PERSISTENCE_FAILED,
+        INTERNAL_ERROR
+    }
+
+    public static MessageAck persisted(String clientMessageId, MessageResponse message) {
+        return MessageAck.builder()
+                .clientMessageId(clientMessageId)
+                .status(Status.PERSISTED)
+                .messageId(message.getId())
+                .conversationId(message.getConversationId())
+                .createdAt(message.getCreatedAt())
+                .build();
+    }
+
+    public static MessageAck failed(String clientMessageId, ErrorCode errorCode, String error) {
+        return MessageAck.builder()
+                .clientMessageId(clientMessageId)
+                .status(Status.FAILED)
+                .errorCode(errorCode)
+                .error(error)
+                .build();
+    }
+}
@@ -2,6 +2,7 @@ package com.nazir.realtimechat.message.dto;
 
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -18,6 +19,12 @@ public class MessageRequest {
     @NotNull(message = "Conversation ID is required")
     private UUID conversationId;
 
+    /** Bounded so that even 4-byte characters fit the TEXT column (65,535 bytes). */
     @NotBlank(message = "Message content cannot be empty")
+    @Size(max = 16000, message = "Message content must be at most 16000 characters")
     private String content;
+
+    /** Client-generated id; retries that reuse it within the dedup window are not sent twice. */
+    @Size(max = 64, message = "Client message ID must be at most 64 characters")
+    private String clientMessageId;
 }
@@ -0,0 +1,23 @@
+package com.nazir.realtimechat.message.dto;
+
+import jakarta.validation.constraints.NotNull;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.UUID;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReadRequest {
+
+    @NotNull(message = "Conversation ID is required")
+    private UUID conversationId;
+
+    /** Newest message the client has displayed; the read cursor never moves past what the user saw. */
+    @NotNull(message = "Last read message ID is required")
+    private UUID lastReadMessageId;
+}
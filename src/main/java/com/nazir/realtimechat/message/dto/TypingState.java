@@ -0,0 +1,26 @@
+package com.nazir.realtimechat.message.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Typing changes in a conversation since the previous broadcast, pushed to
+ * {@code /topic/conversation.{id}}. A user stays typing until they appear in {@code stoppedUserIds},
+ * which the server sends on an explicit stop or when their typing times out.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class TypingState {
+    private UUID conversationId;
+    private List<UUID> startedUserIds;
+    private List<UUID> stoppedUserIds;
+    @Builder.Default
+    private String type = "TYPING";
+}
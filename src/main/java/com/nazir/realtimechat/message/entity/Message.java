@@ -1,6 +1,7 @@
 package com.nazir.realtimechat.message.entity;
 
 import com.nazir.realtimechat.common.entity.BaseEntity;
+import com.nazir.realtimechat.common.entity.TimeOrderedId;
 import com.nazir.realtimechat.conversation.entity.Conversation;
 import com.nazir.realtimechat.user.entity.User;
 import jakarta.persistence.*;
@@ -13,7 +14,7 @@ import java.util.UUID;
 @Entity
 @Table(name = "messages",
         indexes = {
-                @Index(name = "idx_msg_conv_created", columnList = "conversation_id, created_at DESC"),
+                @Index(name = "idx_msg_conv_created_id", columnList = "conversation_id, created_at, id"),
                 @Index(name = "idx_msg_sender", columnList = "sender_id")
         }
 )
@@ -23,7 +24,7 @@ import java.util.UUID;
 public class Message extends BaseEntity {
 
     @Id
-    @GeneratedValue
+    @TimeOrderedId
     private UUID id;
 
     @ManyToOne(fetch = FetchType.LAZY)
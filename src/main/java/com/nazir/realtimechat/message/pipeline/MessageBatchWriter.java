@@ -0,0 +1,103 @@
+package com.nazir.realtimechat.message.pipeline;
+
+import com.nazir.realtimechat.common.util.IdGenerator;
+import com.nazir.realtimechat.conversation.repository.ReadCursorRepository;
+import com.nazir.realtimechat.message.dto.MessageResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.UUID;
+
+/**
+ * Writes batches of pending messages with plain JDBC batch inserts, bypassing the
+ * persistence context, and coalesces the conversation update to one statement per conversation.
+ * Unread counters are bumped per message, since each member's read cursor decides whether a message
+ * counts; the statements still go out as one JDBC batch.
+ */
+@Component
+@RequiredArgsConstructor
+public class MessageBatchWriter {
+
+    // ON DUPLICATE KEY makes a retried batch idempotent if a previous commit succeeded but was not acknowledged
+    private static final String INSERT_MESSAGE_SQL = """
+        INSERT INTO messages (id, conversation_id, sender_id, content, status, created_by, created_at, updated_by, updated_at)
+        VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)
+        ON DUPLICATE KEY UPDATE id = id
+    """;
+
+    private static final String TOUCH_CONVERSATION_SQL = """
+        UPDATE conversations SET last_message_at = ?, last_message_id = ?, updated_at = ?
+        WHERE id = ? AND (last_message_at IS NULL OR last_message_at < ?)
+    """;
+
+    // Only members whose read cursor is before the message count it: the message is broadcast before this
+    // batch commits, and a member may already have read it. A retried batch whose earlier commit went
+    // unacknowledged may over-count; the next read cursor move recomputes the counter
+    private static final String INCREMENT_UNREAD_SQL = """
+        UPDATE conversation_members SET unread_count = unread_count + 1
+        WHERE conversation_id = ? AND user_id <> ?
+          AND (last_read_message_id IS NULL OR %s OR last_read_message_id < ?)
+    """.formatted(ReadCursorRepository.LEGACY_CURSOR);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    public void write(List<PendingMessage> batch) {
+        Calendar utc = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+        Map<UUID, MessageResponse> latestByConversation = new LinkedHashMap<>();
+        for (PendingMessage pending : batch) {
+            MessageResponse message = pending.message();
+            latestByConversation.merge(message.getConversationId(), message, MessageBatchWriter::later);
+        }
+        List<MessageResponse> touches = new ArrayList<>(latestByConversation.values());
+
+        transactionTemplate.executeWithoutResult(status -> {
+            // Member rows are locked before the messages are inserted, in the same order as a read cursor
+            // move (member row, then messages), so the two never deadlock
+            jdbcTemplate.batchUpdate(INCREMENT_UNREAD_SQL, batch, batch.size(), (ps, pending) -> {
+                MessageResponse message = pending.message();
+                ps.setBytes(1, IdGenerator.toBytes(message.getConversationId()));
+                ps.setBytes(2, IdGenerator.toBytes(message.getSenderId()));
+                ps.setBytes(3, IdGenerator.toBytes(message.getId()));
+            });
+            jdbcTemplate.batchUpdate(INSERT_MESSAGE_SQL, batch, batch.size(), (ps, pending) -> {
+                MessageResponse message = pending.message();
+                Timestamp createdAt = Timestamp.from(message.getCreatedAt());
+                ps.setBytes(1, IdGenerator.toBytes(message.getId()));
+                ps.setBytes(2, IdGenerator.toBytes(message.getConversationId()));
+                ps.setBytes(3, IdGenerator.toBytes(message.getSenderId()));
+                ps.setString(4, message.getContent());
+                ps.setString(5, message.getStatus().name());
+                ps.setString(6, pending.createdBy());
+                ps.setTimestamp(7, createdAt, utc);
+                ps.setString(8, pending.createdBy());
+                ps.setTimestamp(9, createdAt, utc);
+            });
+            jdbcTemplate.batchUpdate(TOUCH_CONVERSATION_SQL, touches, touches.size(), (ps, latest) -> {
+                Timestamp lastMessageAt = Timestamp.from(latest.getCreatedAt());
+                ps.setTimestamp(1, lastMessageAt, utc);
+                ps.setBytes(2, IdGenerator.toBytes(latest.getId()));
+                ps.setTimestamp(3, lastMessageAt, utc);
+                ps.setBytes(4, IdGenerator.toBytes(latest.getConversationId()));
+                ps.setTimestamp(5, lastMessageAt, utc);
+            });
+        });
+    }
+
+    private static MessageResponse later(MessageResponse a, MessageResponse b) {
+        int cmp = a.getCreatedAt().compareTo(b.getCreatedAt());
+        if (cmp == 0) {
+            cmp = a.getId().compareTo(b.getId());
+        }
+        return cmp >= 0 ? a : b;
+    }
+}
@@ -0,0 +1,218 @@
+package com.nazir.realtimechat.message.pipeline;
+
+import com.nazir.realtimechat.common.exception.ServiceUnavailableException;
+import com.nazir.realtimechat.message.dto.MessageResponse;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Write-behind queue for chat messages. Messages are accepted (and broadcast by the caller)
+ * immediately, then a single flusher thread writes them to MySQL in batches bounded by
+ * {@code batch-size} and {@code max-delay-ms}.
+ * <p>
+ * Each {@link PendingMessage#persisted()} future is completed when its batch commits, or
+ * completed exceptionally once all retries are exhausted, and every {@link PersistedBatchListener}
+ * is then told about the committed batch. A batch that still fails after its retries is split in
+ * halves and written again, so one bad row only fails its own message. When the queue is full, producers wait up to
+ * {@code enqueue-timeout-ms} and are then rejected.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class MessageWriteBehindPipeline {
+
+    private final MessageBatchWriter batchWriter;
+    private final MeterRegistry meterRegistry;
+    private final List<PersistedBatchListener> listeners;
+
+    @Value("${chat.messages.write-behind.queue-capacity:10000}")
+    private int queueCapacity;
+
+    @Value("${chat.messages.write-behind.batch-size:200}")
+    private int batchSize;
+
+    @Value("${chat.messages.write-behind.max-delay-ms:50}")
+    private long maxDelayMs;
+
+    @Value("${chat.messages.write-behind.enqueue-timeout-ms:100}")
+    private long enqueueTimeoutMs;
+
+    @Value("${chat.messages.write-behind.max-retries:3}")
+    private int maxRetries;
+
+    @Value("${chat.messages.write-behind.retry-backoff-ms:200}")
+    private long retryBackoffMs;
+
+    private BlockingQueue<PendingMessage> queue;
+    private Thread flusher;
+    private volatile boolean running;
+
+    private Timer flushTimer;
+    private DistributionSummary batchSizeSummary;
+    private Counter persistedCounter;
+    private Counter rejectedCounter;
+    private Counter failedCounter;
+
+    @PostConstruct
+    void start() {
+        queue = new ArrayBlockingQueue<>(queueCapacity);
+        Gauge.builder("chat.messages.writebehind.queue.depth", queue, BlockingQueue::size)
+                .description("Messages accepted but not yet written to the database")
+                .register(meterRegistry);
+        flushTimer = Timer.builder("chat.messages.writebehind.flush")
+                .description("Time taken to write one batch of messages")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        batchSizeSummary = DistributionSummary.builder("chat.messages.writebehind.batch.size")
+                .description("Number of messages per flushed batch")
+                .register(meterRegistry);
+        persistedCounter = meterRegistry.counter("chat.messages.writebehind.persisted");
+        rejectedCounter = meterRegistry.counter("chat.messages.writebehind.rejected");
+        failedCounter = meterRegistry.counter("chat.messages.writebehind.failed");
+
+        running = true;
+        flusher = new Thread(this::runFlushLoop, "message-write-behind");
+        flusher.setDaemon(true);
+        flusher.start();
+        log.info("Message write-behind pipeline started (capacity={}, batchSize={}, maxDelayMs={})",
+                queueCapacity, batchSize, maxDelayMs);
+    }
+
+    /**
+     * Hands a message to the pipeline, blocking briefly when the queue is full.
+     *
+     * @throws ServiceUnavailableException if the queue stays full for longer than the enqueue timeout
+     */
+    public void submit(PendingMessage pending) {
+        boolean accepted;
+        try {
+            accepted = running && queue.offer(pending, enqueueTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            accepted = false;
+        }
+        if (!accepted) {
+            rejectedCounter.increment();
+            log.warn("Write-behind queue full, rejecting message {}", pending.message().getId());
+            throw new ServiceUnavailableException("Message queue is full, please retry");
+        }
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException {
+        log.info("Stopping message write-behind pipeline, draining {} pending messages", queue.size());
+        running = false;
+        flusher.join(TimeUnit.SECONDS.toMillis(30));
+    }
+
+    private void runFlushLoop() {
+        List<PendingMessage> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingMessage first = queue.poll(maxDelayMs, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxDelayMs);
+                while (batch.size() < batchSize) {
+                    queue.drainTo(batch, batchSize - batch.size());
+                    long remaining = deadline - System.nanoTime();
+                    if (batch.size() >= batchSize || remaining <= 0) {
+                        break;
+                    }
+                    PendingMessage next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                flush(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                log.warn("Write-behind flusher interrupted with {} messages in hand", batch.size());
+                batch.forEach(p -> p.persisted().completeExceptionally(e));
+                return;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void flush(List<PendingMessage> batch) throws InterruptedException {
+        batchSizeSummary.record(batch.size());
+        for (int attempt = 1; ; attempt++) {
+            try {
+                write(batch);
+                return;
+            } catch (Exception e) {
+                if (attempt > maxRetries) {
+                    log.error("Batch of {} messages failed after {} attempts, isolating the failing rows: {}",
+                            batch.size(), attempt, e.getMessage());
+                    writeBisecting(batch, e);
+                    return;
+                }
+                log.warn("Batch write of {} messages failed (attempt {}), retrying: {}", batch.size(), attempt, e.getMessage());
+                Thread.sleep(retryBackoffMs * attempt);
+            }
+        }
+    }
+
+    private void write(List<PendingMessage> batch) {
+        long start = System.nanoTime();
+        batchWriter.write(batch);
+        flushTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        persistedCounter.increment(batch.size());
+        batch.forEach(p -> p.persisted().complete(p.message()));
+        log.debug("Flushed {} messages", batch.size());
+        notifyListeners(batch);
+    }
+
+    /**
+     * Writes each half of a failed batch on its own, once, recursing into the halves that fail,
+     * until only the messages that cannot be written are left to fail.
+     */
+    private void writeBisecting(List<PendingMessage> batch, Exception failure) {
+        if (batch.size() == 1) {
+            PendingMessage pending = batch.get(0);
+            failedCounter.increment();
+            log.error("Dropping message {}: {}", pending.message().getId(), failure.getMessage());
+            pending.persisted().completeExceptionally(failure);
+            return;
+        }
+        int middle = batch.size() / 2;
+        for (List<PendingMessage> half : List.of(batch.subList(0, middle), batch.subList(middle, batch.size()))) {
+            try {
+                write(half);
+            } catch (Exception e) {
+                writeBisecting(half, e);
+            }
+        }
+    }
+
+    private void notifyListeners(List<PendingMessage> batch) {
+        List<MessageResponse> messages = batch.stream().map(PendingMessage::message).toList();
+        for (PersistedBatchListener listener : listeners) {
+            try {
+                listener.onPersisted(messages);
+            } catch (Exception e) {
+                log.warn("Persisted-batch listener {} failed: {}", listener.getClass().getSimpleName(), e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package com.nazir.realtimechat.message.pipeline;
+
+import com.nazir.realtimechat.message.dto.MessageResponse;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * A message that has been accepted and broadcast but not yet written to MySQL.
+ * {@code persisted} completes once the batch containing it has been committed.
+ */
+public record PendingMessage(MessageResponse message, String createdBy, CompletableFuture<MessageResponse> persisted) {
+
+    public PendingMessage(MessageResponse message, String createdBy) {
+        this(message, createdBy, new CompletableFuture<>());
+    }
+}
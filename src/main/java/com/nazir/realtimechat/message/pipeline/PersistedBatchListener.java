@@ -0,0 +1,14 @@
+package com.nazir.realtimechat.message.pipeline;
+
+import com.nazir.realtimechat.message.dto.MessageResponse;
+
+import java.util.List;
+
+/**
+ * Notified on the flusher thread after each batch of messages commits. Implementations should
+ * do at most one network round trip per batch, since the next batch waits for them.
+ */
+public interface PersistedBatchListener {
+
+    void onPersisted(List<MessageResponse> messages);
+}
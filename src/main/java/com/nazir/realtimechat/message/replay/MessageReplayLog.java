@@ -0,0 +1,125 @@
+package com.nazir.realtimechat.message.replay;
+
+import com.nazir.realtimechat.message.dto.MessageResponse;
+import com.nazir.realtimechat.message.entity.Message;
+import com.nazir.realtimechat.message.pipeline.PersistedBatchListener;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.connection.Limit;
+import org.springframework.data.redis.connection.RedisStreamCommands.XAddOptions;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.RecordId;
+import org.springframework.data.redis.connection.stream.StreamRecords;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Short-retention log of persisted messages, one Redis Stream per conversation, shared by every node.
+ * Entries older than the retention window are trimmed on each append, so a stream always holds
+ * the conversation's recent messages and at least its latest one. Streams of idle conversations expire.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class MessageReplayLog implements PersistedBatchListener {
+
+    private static final String STREAM_KEY_PREFIX = "chat:replay:";
+
+    private final StringRedisTemplate redisTemplate;
+
+    @Value("${chat.replay.retention-minutes:10}")
+    private long retentionMinutes;
+
+    @Value("${chat.replay.idle-expiry-hours:24}")
+    private long idleExpiryHours;
+
+    /**
+     * Appends a committed batch in one pipelined round trip, trimming each stream to the retention window.
+     */
+    @Override
+    public void onPersisted(List<MessageResponse> messages) {
+        XAddOptions trim = XAddOptions.none()
+                .minId(RecordId.of(System.currentTimeMillis() - TimeUnit.MINUTES.toMillis(retentionMinutes), 0))
+                .approximateTrimming(true);
+        long expirySeconds = TimeUnit.HOURS.toSeconds(idleExpiryHours);
+        try {
+            redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                for (MessageResponse message : messages) {
+                    byte[] key = bytes(streamKey(message.getConversationId()));
+                    connection.streamCommands().xAdd(StreamRecords.newRecord().in(key).ofMap(toFields(message)), trim);
+                    connection.keyCommands().expire(key, expirySeconds);
+                }
+                return null;
+            });
+        } catch (Exception e) {
+            // Reconnecting clients fall back to the history API for these conversations
+            log.warn("Failed to append {} messages to the replay log: {}", messages.size(), e.getMessage());
+        }
+    }
+
+    /**
+     * Server time (epoch millis) of the oldest retained entry, or null if the stream is empty or expired.
+     */
+    public Long oldestEntryMillis(UUID conversationId) {
+        List<MapRecord<String, Object, Object>> oldest = redisTemplate.opsForStream()
+                .range(streamKey(conversationId), Range.unbounded(), Limit.limit().count(1));
+        return oldest == null || oldest.isEmpty() ? null : oldest.get(0).getId().getTimestamp();
+    }
+
+    /**
+     * Up to {@code count} entries appended at or after {@code fromMillis} (Redis server time), in append order.
+     */
+    public List<MessageResponse> readFrom(UUID conversationId, long fromMillis, int count) {
+        List<MapRecord<String, Object, Object>> records = redisTemplate.opsForStream().range(
+                streamKey(conversationId),
+                Range.rightUnbounded(Range.Bound.inclusive(fromMillis + "-0")),
+                Limit.limit().count(count));
+        List<MessageResponse> messages = new ArrayList<>();
+        if (records == null) {
+            return messages;
+        }
+        for (MapRecord<String, Object, Object> record : records) {
+            Map<Object, Object> fields = record.getValue();
+            messages.add(MessageResponse.builder()
+                    .id(UUID.fromString((String) fields.get("id")))
+                    .conversationId(conversationId)
+                    .senderId(UUID.fromString((String) fields.get("senderId")))
+                    .content((String) fields.get("content"))
+                    .status(Message.MessageStatus.valueOf((String) fields.get("status")))
+                    .createdAt(Instant.parse((String) fields.get("createdAt")))
+                    .build());
+        }
+        return messages;
+    }
+
+    private static Map<byte[], byte[]> toFields(MessageResponse message) {
+        Map<byte[], byte[]> fields = new LinkedHashMap<>();
+        fields.put(bytes("id"), bytes(message.getId().toString()));
+        fields.put(bytes("senderId"), bytes(message.getSenderId().toString()));
+        fields.put(bytes("content"), bytes(message.getContent()));
+        fields.put(bytes("status"), bytes(message.getStatus().name()));
+        // Full precision, so cursors built from replayed messages match the database
+        fields.put(bytes("createdAt"), bytes(message.getCreatedAt().toString()));
+        return fields;
+    }
+
+    private static String streamKey(UUID conversationId) {
+        return STREAM_KEY_PREFIX + conversationId;
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,193 @@
+package com.nazir.realtimechat.message.replay;
+
+import com.nazir.realtimechat.common.util.CursorCodec;
+import com.nazir.realtimechat.common.util.IdGenerator;
+import com.nazir.realtimechat.conversation.service.ConversationMembershipCache;
+import com.nazir.realtimechat.message.dto.ConversationReplay;
+import com.nazir.realtimechat.message.dto.MessageResponse;
+import com.nazir.realtimechat.message.repository.MessageRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Predicate;
+
+/**
+ * Reconnect catch-up. A client sends its last-seen message id per conversation in the
+ * {@code resume} header of its STOMP CONNECT frame ({@code conversationId=messageId,...}) and then
+ * subscribes to {@code /app/chat.replay}; the reply holds the messages it missed, read from the
+ * {@link MessageReplayLog} instead of the database. Gaps older than the log's retention are
+ * answered with a cursor for {@code GET /api/messages?direction=AFTER}. Sessions closed as slow
+ * consumers get their resume header back as a one-time {@code resume-token}.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ReplayService {
+
+    public static final String RESUME_HEADER = "resume";
+    public static final String RESUME_ATTRIBUTE = "chat.resume";
+    public static final String RESUME_TOKEN_HEADER = "resume-token";
+
+    private static final String RESUME_TOKEN_KEY_PREFIX = "chat:resume-token:";
+    private static final String TOKEN_SEPARATOR = "|";
+
+    private static final int MAX_RESUME_CONVERSATIONS = 200;
+
+    // Tolerated skew between the application clocks (message ids) and the Redis clock (stream ids)
+    private static final long CLOCK_SLACK_MS = 5000;
+
+    private static final Comparator<MessageResponse> OLDEST_FIRST = Comparator
+            .comparing(MessageResponse::getCreatedAt)
+            .thenComparing(MessageResponse::getId);
+
+    private final MessageReplayLog replayLog;
+    private final ConversationMembershipCache membershipCache;
+    private final MessageRepository messageRepository;
+    private final StringRedisTemplate redisTemplate;
+
+    @Value("${chat.replay.max-messages-per-conversation:100}")
+    private int maxMessagesPerConversation;
+
+    @Value("${chat.replay.resume-token-ttl-minutes:10}")
+    private long resumeTokenTtlMinutes;
+
+    public List<ConversationReplay> replay(UUID userId, String resumeHeader) {
+        Map<UUID, UUID> lastSeen = parseResumeHeader(resumeHeader);
+        List<ConversationReplay> replays = new ArrayList<>(lastSeen.size());
+        lastSeen.forEach((conversationId, lastSeenId) -> {
+            if (!membershipCache.isMember(conversationId, userId)) {
+                log.warn("User {} asked to resume conversation {} without membership", userId, conversationId);
+                return;
+            }
+            replays.add(replayConversation(conversationId, lastSeenId));
+        });
+        log.info("Replayed {} conversations for user {}", replays.size(), userId);
+        return replays;
+    }
+
+    /**
+     * Stores a resume header for a session the server is about to close, under a one-time token
+     * the client can present as the {@code resume-token} header of its next CONNECT.
+     */
+    public String issueResumeToken(String username, String resumeHeader) {
+        String token = UUID.randomUUID().toString();
+        redisTemplate.opsForValue().set(RESUME_TOKEN_KEY_PREFIX + token, username + TOKEN_SEPARATOR + resumeHeader,
+                Duration.ofMinutes(resumeTokenTtlMinutes));
+        return token;
+    }
+
+    /**
+     * Consumes a resume token, returning its resume header, or null if the token is unknown,
+     * expired or was issued to another user.
+     */
+    public String redeemResumeToken(String token, String username) {
+        String value = redisTemplate.opsForValue().getAndDelete(RESUME_TOKEN_KEY_PREFIX + token);
+        if (value == null || !value.startsWith(username + TOKEN_SEPARATOR)) {
+            log.warn("Ignoring invalid resume token for user {}", username);
+            return null;
+        }
+        return value.substring(username.length() + TOKEN_SEPARATOR.length());
+    }
+
+    private ConversationReplay replayConversation(UUID conversationId, UUID lastSeenId) {
+        // Only version 7 ids carry a timestamp; older random ids always take the database path
+        long fromMillis = IdGenerator.timestampOf(lastSeenId) - CLOCK_SLACK_MS;
+        Long oldest = lastSeenId.version() == 7 ? replayLog.oldestEntryMillis(conversationId) : null;
+        if (oldest == null || oldest > fromMillis) {
+            // The gap reaches past the log: let the client page it from the database
+            String cursor = messageRepository.findById(lastSeenId)
+                    .map(m -> CursorCodec.encode(m.getCreatedAt().toString(), m.getId().toString()))
+                    .orElseGet(() -> positionCursor(lastSeenId));
+            if (cursor == null) {
+                // A legacy id that is not stored gives no position to page from
+                log.info("Last-seen message {} of conversation {} not found, asking the client to resync",
+                        lastSeenId, conversationId);
+                return ConversationReplay.builder()
+                        .conversationId(conversationId)
+                        .items(List.of())
+                        .resync(true)
+                        .build();
+            }
+            return ConversationReplay.builder()
+                    .conversationId(conversationId)
+                    .items(List.of())
+                    .nextCursor(cursor)
+                    .hasMore(true)
+                    .build();
+        }
+
+        // The slack window can hold entries from before the last-seen message, so read extra
+        int readCount = maxMessagesPerConversation * 2;
+        List<MessageResponse> entries = replayLog.readFrom(conversationId, fromMillis, readCount);
+        MessageResponse seen = entries.stream().filter(m -> m.getId().equals(lastSeenId)).findFirst().orElse(null);
+        // Without the last-seen entry, fall back to id order, which is time order for version 7 ids
+        Predicate<MessageResponse> missed = seen != null
+                ? m -> OLDEST_FIRST.compare(m, seen) > 0
+                : m -> m.getId().compareTo(lastSeenId) > 0;
+        List<MessageResponse> items = entries.stream().filter(missed).sorted(OLDEST_FIRST).toList();
+
+        boolean hasMore = items.size() > maxMessagesPerConversation || entries.size() == readCount;
+        if (items.size() > maxMessagesPerConversation) {
+            items = items.subList(0, maxMessagesPerConversation);
+        }
+        String nextCursor = null;
+        if (hasMore) {
+            MessageResponse last = !items.isEmpty() ? items.get(items.size() - 1) : seen;
+            if (last != null) {
+                nextCursor = CursorCodec.encode(last.getCreatedAt().toString(), last.getId().toString());
+            }
+        }
+        return ConversationReplay.builder()
+                .conversationId(conversationId)
+                .items(items)
+                .nextCursor(nextCursor)
+                .hasMore(hasMore)
+                .build();
+    }
+
+    /**
+     * History cursor for a position that is not a stored message, such as the time a session
+     * subscribed; it pages on from the time a version 7 id carries.
+     */
+    private static String positionCursor(UUID id) {
+        return IdGenerator.isTimeOrdered(id)
+                ? CursorCodec.encode(Instant.ofEpochMilli(IdGenerator.timestampOf(id)).toString(), id.toString())
+                : null;
+    }
+
+    /**
+     * Parses {@code conversationId=messageId} pairs separated by commas, skipping malformed ones.
+     */
+    public static Map<UUID, UUID> parseResumeHeader(String header) {
+        Map<UUID, UUID> lastSeen = new LinkedHashMap<>();
+        if (!StringUtils.hasText(header)) {
+            return lastSeen;
+        }
+        for (String pair : header.split(",")) {
+            if (lastSeen.size() >= MAX_RESUME_CONVERSATIONS) {
+                log.warn("Resume header lists more than {} conversations, ignoring the rest", MAX_RESUME_CONVERSATIONS);
+                break;
+            }
+            int separator = pair.indexOf('=');
+            try {
+                lastSeen.put(UUID.fromString(pair.substring(0, separator).trim()),
+                        UUID.fromString(pair.substring(separator + 1).trim()));
+            } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+                log.warn("Ignoring malformed resume entry: {}", pair);
+            }
+        }
+        return lastSeen;
+    }
+}
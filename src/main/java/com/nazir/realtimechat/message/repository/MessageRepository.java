@@ -1,9 +1,7 @@
 package com.nazir.realtimechat.message.repository;
 
 import com.nazir.realtimechat.message.entity.Message;
-import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
-import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
@@ -12,27 +10,61 @@ import java.time.Instant;
 import java.util.List;
 import java.util.UUID;
 
+/**
+ * Message history is keyset-paged on {@code (created_at, id)}. Every query is a range scan of
+ * {@code idx_msg_conv_created_id}; the predicates are spelled out so MySQL can use the index range
+ * on {@code created_at} and filter ties on {@code id}.
+ */
 @Repository
 public interface MessageRepository extends JpaRepository<Message, UUID> {
 
     /**
-     * Cursor-based pagination for messages in a conversation.
-     * Returns messages created before the given timestamp, ordered by creation date descending.
+     * Newest messages of a conversation, newest first.
      */
-    @Query("SELECT m FROM Message m " +
-           "WHERE m.conversation.id = :conversationId " +
-           "AND (:before IS NULL OR m.createdAt < :before) " +
-           "ORDER BY m.createdAt DESC")
-    List<Message> findMessagesBefore(@Param("conversationId") UUID conversationId, @Param("before") Instant before, Pageable pageable);
+    @Query(value = """
+        SELECT * FROM messages
+        WHERE conversation_id = :conversationId
+        ORDER BY created_at DESC, id DESC
+        LIMIT :limit
+        """, nativeQuery = true)
+    List<Message> findLatest(@Param("conversationId") UUID conversationId, @Param("limit") int limit);
 
     /**
-     * Marks all messages in a conversation as READ for a specific user (the recipient).
-     * This updates messages where the sender is NOT the current user and status is NOT READ.
+     * Messages strictly older than the {@code (createdAt, id)} position, newest first.
      */
-    @Modifying
-    @Query("UPDATE Message m SET m.status = :status " +
-           "WHERE m.conversation.id = :conversationId " +
-           "AND m.sender.id != :userId " +
-           "AND m.status != :status")
-    int markMessagesAsRead(@Param("conversationId") UUID conversationId, @Param("userId") UUID userId, @Param("status") Message.MessageStatus status);
+    @Query(value = """
+        SELECT * FROM messages
+        WHERE conversation_id = :conversationId
+          AND created_at <= :createdAt
+          AND (created_at < :createdAt OR id < :id)
+        ORDER BY created_at DESC, id DESC
+        LIMIT :limit
+        """, nativeQuery = true)
+    List<Message> findBefore(@Param("conversationId") UUID conversationId, @Param("createdAt") Instant createdAt,
+                             @Param("id") UUID id, @Param("limit") int limit);
+
+    /**
+     * Oldest messages of a conversation, oldest first.
+     */
+    @Query(value = """
+        SELECT * FROM messages
+        WHERE conversation_id = :conversationId
+        ORDER BY created_at ASC, id ASC
+        LIMIT :limit
+        """, nativeQuery = true)
+    List<Message> findEarliest(@Param("conversationId") UUID conversationId, @Param("limit") int limit);
+
+    /**
+     * Messages strictly newer than the {@code (createdAt, id)} position, oldest first.
+     */
+    @Query(value = """
+        SELECT * FROM messages
+        WHERE conversation_id = :conversationId
+          AND created_at >= :createdAt
+          AND (created_at > :createdAt OR id > :id)
+        ORDER BY created_at ASC, id ASC
+        LIMIT :limit
+        """, nativeQuery = true)
+    List<Message> findAfter(@Param("conversationId") UUID conversationId, @Param("createdAt") Instant createdAt,
+                            @Param("id") UUID id, @Param("limit") int limit);
 }
@@ -0,0 +1,146 @@
+package com.nazir.realtimechat.message.search;
+
+import com.nazir.realtimechat.common.util.IdGenerator;
+import com.nazir.realtimechat.message.dto.MessageResponse;
+import com.nazir.realtimechat.message.entity.Message;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Calendar;
+import java.util.List;
+import java.util.TimeZone;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Feeds the search index from {@code messages_archive} and then {@code messages} in primary key
+ * order, one keyset page at a time, so memory stays flat however large the tables are. On startup it catches up from the id
+ * recorded by the index's last commit (minus {@code catch-up-slack-seconds}, for messages
+ * committed out of id order); a new index, or {@code rebuild-on-startup}, scans the whole table.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class MessageIndexRebuilder {
+
+    private static final String FIRST_PAGE_SQL = """
+        SELECT id, conversation_id, sender_id, content, status, created_at FROM %s
+        ORDER BY id LIMIT ?
+    """;
+
+    private static final String NEXT_PAGE_SQL = """
+        SELECT id, conversation_id, sender_id, content, status, created_at FROM %s
+        WHERE id > ? ORDER BY id LIMIT ?
+    """;
+
+    private static final String ARCHIVE_TABLE = "messages_archive";
+    private static final String HOT_TABLE = "messages";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final MessageSearchIndex searchIndex;
+
+    @Value("${chat.search.rebuild-on-startup:false}")
+    private boolean rebuildOnStartup;
+
+    @Value("${chat.search.rebuild-page-size:1000}")
+    private int pageSize;
+
+    @Value("${chat.search.catch-up-slack-seconds:60}")
+    private long catchUpSlackSeconds;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onStartup() {
+        UUID committed = searchIndex.committedMaxId();
+        // Only version 7 ids carry a timestamp to back off from; otherwise scan everything
+        UUID from = rebuildOnStartup || committed == null || committed.version() != 7 ? null
+                : IdGenerator.lowestIdAt(IdGenerator.timestampOf(committed) - TimeUnit.SECONDS.toMillis(catchUpSlackSeconds));
+        start(from);
+    }
+
+    /**
+     * Starts a background scan of messages with ids above {@code from}, or of all messages when null.
+     *
+     * @return false if a scan is already running
+     */
+    public boolean start(UUID from) {
+        if (!running.compareAndSet(false, true)) {
+            return false;
+        }
+        Thread thread = new Thread(() -> {
+            try {
+                scan(from);
+            } finally {
+                running.set(false);
+            }
+        }, "message-index-rebuild");
+        thread.setDaemon(true);
+        thread.start();
+        return true;
+    }
+
+    private void scan(UUID from) {
+        log.info("Indexing messages {}", from == null ? "from the beginning" : "after " + from);
+        Calendar utc = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+        long indexed = 0;
+        // A version-less position makes an interrupted full scan start over on the next run
+        searchIndex.setScanPosition(from != null ? from : IdGenerator.lowestIdAt(0));
+        try {
+            // The archive goes first with the position left pinned, so a scan interrupted there starts over
+            indexed += scanTable(ARCHIVE_TABLE, from, utc, false);
+            indexed += scanTable(HOT_TABLE, from, utc, true);
+            searchIndex.setScanPosition(null);
+            searchIndex.commit();
+            searchIndex.refresh();
+            log.info("Indexed {} messages from the database", indexed);
+        } catch (Exception e) {
+            // The position stays pinned, so the next startup resumes from the last committed page
+            log.error("Message index scan stopped after {} messages: {}", indexed, e.getMessage());
+        }
+    }
+
+    private long scanTable(String table, UUID from, Calendar utc, boolean trackPosition) throws IOException {
+        long indexed = 0;
+        UUID position = from;
+        while (true) {
+            List<MessageResponse> page = position == null
+                    ? jdbcTemplate.query(FIRST_PAGE_SQL.formatted(table), (rs, rowNum) -> mapRow(rs, utc), pageSize)
+                    : jdbcTemplate.query(NEXT_PAGE_SQL.formatted(table), (rs, rowNum) -> mapRow(rs, utc),
+                            IdGenerator.toBytes(position), pageSize);
+            if (page.isEmpty()) {
+                break;
+            }
+            searchIndex.index(page);
+            indexed += page.size();
+            position = page.get(page.size() - 1).getId();
+            if (trackPosition) {
+                searchIndex.setScanPosition(position);
+            }
+            if (page.size() < pageSize) {
+                break;
+            }
+        }
+        return indexed;
+    }
+
+    private static MessageResponse mapRow(ResultSet rs, Calendar utc) throws SQLException {
+        return MessageResponse.builder()
+                .id(IdGenerator.fromBytes(rs.getBytes("id")))
+                .conversationId(IdGenerator.fromBytes(rs.getBytes("conversation_id")))
+                .senderId(IdGenerator.fromBytes(rs.getBytes("sender_id")))
+                .content(rs.getString("content"))
+                .status(Message.MessageStatus.valueOf(rs.getString("status")))
+                .createdAt(rs.getTimestamp("created_at", utc).toInstant())
+                .build();
+    }
+}
@@ -0,0 +1,257 @@
+package com.nazir.realtimechat.message.search;
+
+import com.nazir.realtimechat.common.util.IdGenerator;
+import com.nazir.realtimechat.message.dto.MessageResponse;
+import com.nazir.realtimechat.message.entity.Message;
+import com.nazir.realtimechat.message.pipeline.PersistedBatchListener;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.connection.Limit;
+import org.springframework.data.redis.connection.RedisStreamCommands.XAddOptions;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.ReadOffset;
+import org.springframework.data.redis.connection.stream.RecordId;
+import org.springframework.data.redis.connection.stream.StreamOffset;
+import org.springframework.data.redis.connection.stream.StreamReadOptions;
+import org.springframework.data.redis.connection.stream.StreamRecords;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Feeds every node's search index from one Redis Stream, so a node indexes messages persisted on
+ * other nodes too. The write-behind flusher appends each committed batch in one pipelined round trip;
+ * a dedicated indexer thread per node reads the stream and does the Lucene work. A batch that fails
+ * to index is retried until it succeeds, since the read position only moves past indexed entries.
+ * <p>
+ * The stream is trimmed to {@code feed-retention-minutes}. A node that restarts catches up from the
+ * database ({@link MessageIndexRebuilder}); one that falls further behind than the retention while
+ * running starts the same catch-up from its read position. When appending a batch fails, this node
+ * catches up on it from the database as well; other nodes only see those messages once their index
+ * is rebuilt ({@code rebuild-on-startup}), which {@code chat.search.feed.append.failed} signals.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class MessageSearchFeed implements PersistedBatchListener {
+
+    private static final String FEED_KEY = "chat:search:feed";
+
+    private final StringRedisTemplate redisTemplate;
+    private final MessageSearchIndex searchIndex;
+    private final MessageIndexRebuilder rebuilder;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${chat.search.feed.retention-minutes:60}")
+    private long retentionMinutes;
+
+    @Value("${chat.search.feed.batch-size:500}")
+    private int batchSize;
+
+    @Value("${chat.search.feed.poll-timeout-ms:1000}")
+    private long pollTimeoutMs;
+
+    @Value("${chat.search.feed.retry-backoff-ms:1000}")
+    private long retryBackoffMs;
+
+    @Value("${chat.search.catch-up-slack-seconds:60}")
+    private long catchUpSlackSeconds;
+
+    private volatile boolean running;
+    private Thread indexer;
+    private Counter appendFailedCounter;
+    // Earliest message that could not be appended and has not been caught up on yet
+    private final AtomicReference<UUID> missedFrom = new AtomicReference<>();
+
+    @PostConstruct
+    void init() {
+        appendFailedCounter = Counter.builder("chat.search.feed.append.failed")
+                .description("Messages that could not be appended to the search feed")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Appends a committed batch to the feed, trimming entries older than the retention window.
+     */
+    @Override
+    public void onPersisted(List<MessageResponse> messages) {
+        XAddOptions trim = XAddOptions.none()
+                .minId(RecordId.of(System.currentTimeMillis() - TimeUnit.MINUTES.toMillis(retentionMinutes), 0))
+                .approximateTrimming(true);
+        byte[] key = bytes(FEED_KEY);
+        try {
+            redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                for (MessageResponse message : messages) {
+                    connection.streamCommands().xAdd(StreamRecords.newRecord().in(key).ofMap(toFields(message)), trim);
+                }
+                return null;
+            });
+        } catch (Exception e) {
+            appendFailedCounter.increment(messages.size());
+            log.warn("Failed to append {} messages to the search feed, catching up from the database: {}",
+                    messages.size(), e.getMessage());
+            UUID earliest = messages.stream().map(MessageResponse::getId).min(IdGenerator.BINARY_ORDER).orElseThrow();
+            missedFrom.accumulateAndGet(earliest,
+                    (current, candidate) -> current == null || IdGenerator.BINARY_ORDER.compare(candidate, current) < 0
+                            ? candidate : current);
+            catchUpMissed();
+        }
+    }
+
+    /**
+     * Reads messages that never reached the feed back from the database. If a scan is already
+     * running the position is kept, and the indexer thread tries again on its next poll.
+     */
+    private void catchUpMissed() {
+        UUID from = missedFrom.get();
+        if (from == null) {
+            return;
+        }
+        long fromMillis = IdGenerator.timestampOf(from) - TimeUnit.SECONDS.toMillis(catchUpSlackSeconds);
+        if (rebuilder.start(IdGenerator.lowestIdAt(Math.max(0, fromMillis)))) {
+            // A later failure that lowered the position in the meantime keeps it pending
+            missedFrom.compareAndSet(from, null);
+        }
+    }
+
+    /**
+     * Starts reading slightly before now: the startup catch-up covers what came earlier, and
+     * re-indexing a message that both deliver is harmless.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        long fromMillis = System.currentTimeMillis() - TimeUnit.SECONDS.toMillis(catchUpSlackSeconds);
+        running = true;
+        indexer = new Thread(() -> consume(RecordId.of(fromMillis, 0)), "search-indexer");
+        indexer.setDaemon(true);
+        indexer.start();
+    }
+
+    @PreDestroy
+    void stop() {
+        running = false;
+        if (indexer != null) {
+            indexer.interrupt();
+        }
+    }
+
+    private void consume(RecordId from) {
+        RecordId position = from;
+        while (running) {
+            catchUpMissed();
+            List<MapRecord<String, Object, Object>> records;
+            try {
+                records = redisTemplate.opsForStream().read(
+                        StreamReadOptions.empty().count(batchSize).block(Duration.ofMillis(pollTimeoutMs)),
+                        StreamOffset.create(FEED_KEY, ReadOffset.from(position)));
+            } catch (Exception e) {
+                log.warn("Failed to read the search feed: {}", e.getMessage());
+                if (!pause()) {
+                    return;
+                }
+                continue;
+            }
+            if (records == null || records.isEmpty()) {
+                continue;
+            }
+            if (!indexWithRetry(records.stream().map(MessageSearchFeed::toMessage).toList(), position)) {
+                return;
+            }
+            position = records.get(records.size() - 1).getId();
+        }
+    }
+
+    /**
+     * Indexes a batch, retrying with a pause between attempts until it succeeds or the node stops.
+     *
+     * @return false if the node stopped first
+     */
+    private boolean indexWithRetry(List<MessageResponse> messages, RecordId position) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                searchIndex.index(messages);
+                if (attempt > 1) {
+                    catchUpIfTrimmed(position);
+                }
+                return true;
+            } catch (IOException | RuntimeException e) {
+                log.warn("Failed to index {} messages (attempt {}), retrying: {}", messages.size(), attempt, e.getMessage());
+                if (!pause()) {
+                    return false;
+                }
+            }
+        }
+    }
+
+    /**
+     * After a long failure the entries following {@code position} may have been trimmed; if so the
+     * gap is read back from the database.
+     */
+    private void catchUpIfTrimmed(RecordId position) {
+        List<MapRecord<String, Object, Object>> oldest = redisTemplate.opsForStream()
+                .range(FEED_KEY, Range.unbounded(), Limit.limit().count(1));
+        if (oldest != null && !oldest.isEmpty() && oldest.get(0).getId().getTimestamp() > position.getTimestamp()) {
+            long fromMillis = position.getTimestamp() - TimeUnit.SECONDS.toMillis(catchUpSlackSeconds);
+            log.warn("Search feed was trimmed past this node's position, catching up from the database");
+            rebuilder.start(IdGenerator.lowestIdAt(Math.max(0, fromMillis)));
+        }
+    }
+
+    private boolean pause() {
+        try {
+            Thread.sleep(retryBackoffMs);
+            return running;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private static Map<byte[], byte[]> toFields(MessageResponse message) {
+        Map<byte[], byte[]> fields = new LinkedHashMap<>();
+        fields.put(bytes("id"), bytes(message.getId().toString()));
+        fields.put(bytes("conversationId"), bytes(message.getConversationId().toString()));
+        fields.put(bytes("senderId"), bytes(message.getSenderId().toString()));
+        fields.put(bytes("content"), bytes(message.getContent()));
+        fields.put(bytes("status"), bytes(message.getStatus().name()));
+        // Full precision, so search cursors match the history API's
+        fields.put(bytes("createdAt"), bytes(message.getCreatedAt().toString()));
+        return fields;
+    }
+
+    private static MessageResponse toMessage(MapRecord<String, Object, Object> record) {
+        Map<Object, Object> fields = record.getValue();
+        return MessageResponse.builder()
+                .id(UUID.fromString((String) fields.get("id")))
+                .conversationId(UUID.fromString((String) fields.get("conversationId")))
+                .senderId(UUID.fromString((String) fields.get("senderId")))
+                .content((String) fields.get("content"))
+                .status(Message.MessageStatus.valueOf((String) fields.get("status")))
+                .createdAt(Instant.parse((String) fields.get("createdAt")))
+                .build();
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
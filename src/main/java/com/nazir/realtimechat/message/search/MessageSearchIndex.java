@@ -0,0 +1,260 @@
+package com.nazir.realtimechat.message.search;
+
+import com.nazir.realtimechat.common.dto.CursorPage;
+import com.nazir.realtimechat.common.exception.BadRequestException;
+import com.nazir.realtimechat.common.util.CursorCodec;
+import com.nazir.realtimechat.common.util.IdGenerator;
+import com.nazir.realtimechat.message.dto.MessageResponse;
+import com.nazir.realtimechat.message.entity.Message;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.NumericDocValuesField;
+import org.apache.lucene.document.SortedDocValuesField;
+import org.apache.lucene.document.StoredField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.ConcurrentMergeScheduler;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.StoredFields;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.index.TieredMergePolicy;
+import org.apache.lucene.queryparser.simple.SimpleQueryParser;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.FieldDoc;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortField;
+import org.apache.lucene.search.TermInSetQuery;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.util.BytesRef;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Embedded Lucene index over message content, kept on local disk. Messages committed on any node
+ * arrive through {@link MessageSearchFeed} and become searchable on the next refresh
+ * ({@code refresh-interval-ms}); segments are merged in the background. Each commit records the
+ * highest message id indexed so far, which {@link MessageIndexRebuilder} resumes from after a restart.
+ */
+@Slf4j
+@Component
+public class MessageSearchIndex {
+
+    static final String MAX_ID_COMMIT_KEY = "maxId";
+
+    private static final String ID = "id";
+    private static final String CONVERSATION_ID = "conversationId";
+    private static final String SENDER_ID = "senderId";
+    private static final String CONTENT = "content";
+    private static final String STATUS = "status";
+    private static final String CREATED_AT = "createdAt";
+    private static final String CREATED_AT_SORT = "createdAtSort";
+
+    // Newest first, with the id as tie-breaker: the same keyset order as the history API
+    private static final Sort NEWEST_FIRST = new Sort(
+            new SortField(CREATED_AT_SORT, SortField.Type.LONG, true),
+            new SortField(ID, SortField.Type.STRING, true));
+
+    @Value("${chat.search.index-dir:./data/search-index}")
+    private String indexDir;
+
+    @Value("${chat.search.ram-buffer-mb:32}")
+    private double ramBufferMb;
+
+    private final Analyzer analyzer = new StandardAnalyzer();
+    private final AtomicReference<UUID> maxIndexedId = new AtomicReference<>();
+    // While a database scan runs, commits only vouch for ids up to its position
+    private volatile UUID scanPosition;
+
+    private Directory directory;
+    private IndexWriter writer;
+    private SearcherManager searcherManager;
+
+    @PostConstruct
+    void open() throws IOException {
+        directory = FSDirectory.open(Paths.get(indexDir));
+        IndexWriterConfig config = new IndexWriterConfig(analyzer)
+                .setOpenMode(IndexWriterConfig.OpenMode.CREATE_OR_APPEND)
+                .setRAMBufferSizeMB(ramBufferMb)
+                .setMergeScheduler(new ConcurrentMergeScheduler())
+                .setMergePolicy(new TieredMergePolicy());
+        writer = new IndexWriter(directory, config);
+        searcherManager = new SearcherManager(writer, null);
+        maxIndexedId.set(committedMaxId());
+        log.info("Message search index opened at {} ({} documents)", indexDir, writer.getDocStats().numDocs);
+    }
+
+    @PreDestroy
+    void close() throws IOException {
+        commit();
+        searcherManager.close();
+        writer.close();
+        directory.close();
+    }
+
+    /**
+     * Adds or replaces messages by id, so re-indexing a message is harmless.
+     */
+    public void index(Collection<MessageResponse> messages) throws IOException {
+        for (MessageResponse message : messages) {
+            writer.updateDocument(new Term(ID, message.getId().toString()), toDocument(message));
+            maxIndexedId.accumulateAndGet(message.getId(),
+                    (current, candidate) -> current == null || IdGenerator.BINARY_ORDER.compare(candidate, current) > 0 ? candidate : current);
+        }
+    }
+
+    /**
+     * Highest message id (in BINARY(16) order) recorded by the last commit, or null for a new index.
+     */
+    public UUID committedMaxId() {
+        Iterable<Map.Entry<String, String>> commitData = writer.getLiveCommitData();
+        if (commitData != null) {
+            for (Map.Entry<String, String> entry : commitData) {
+                if (MAX_ID_COMMIT_KEY.equals(entry.getKey())) {
+                    return UUID.fromString(entry.getValue());
+                }
+            }
+        }
+        return null;
+    }
+
+    void setScanPosition(UUID position) {
+        this.scanPosition = position;
+    }
+
+    @Scheduled(fixedDelayString = "${chat.search.refresh-interval-ms:1000}")
+    public void refresh() {
+        try {
+            searcherManager.maybeRefresh();
+        } catch (IOException e) {
+            log.warn("Failed to refresh the message search index: {}", e.getMessage());
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${chat.search.commit-interval-ms:60000}")
+    public void commit() {
+        try {
+            if (!writer.hasUncommittedChanges()) {
+                return;
+            }
+            UUID maxId = scanPosition != null ? scanPosition : maxIndexedId.get();
+            if (maxId != null) {
+                writer.setLiveCommitData(Map.of(MAX_ID_COMMIT_KEY, maxId.toString()).entrySet());
+            }
+            writer.commit();
+        } catch (IOException e) {
+            log.warn("Failed to commit the message search index: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Messages in the given conversations matching every term of {@code text}, newest first.
+     * The text is parsed with Lucene's simple syntax: quoted phrases, {@code -term}, {@code prefix*}
+     * and {@code |} for alternatives.
+     */
+    public CursorPage<MessageResponse> search(Collection<UUID> conversationIds, String text, String cursor, int limit) {
+        SimpleQueryParser parser = new SimpleQueryParser(analyzer, CONTENT);
+        parser.setDefaultOperator(BooleanClause.Occur.MUST);
+        Query matches = parser.parse(text);
+        if (matches == null || conversationIds.isEmpty()) {
+            return CursorPage.<MessageResponse>builder().items(List.of()).hasMore(false).build();
+        }
+        List<BytesRef> conversations = conversationIds.stream().map(id -> new BytesRef(id.toString())).toList();
+        Query query = new BooleanQuery.Builder()
+                .add(matches, BooleanClause.Occur.MUST)
+                .add(new TermInSetQuery(CONVERSATION_ID, conversations), BooleanClause.Occur.FILTER)
+                .build();
+
+        try {
+            IndexSearcher searcher = searcherManager.acquire();
+            try {
+                TopDocs top = cursor == null
+                        ? searcher.search(query, limit + 1, NEWEST_FIRST)
+                        : searcher.searchAfter(after(cursor), query, limit + 1, NEWEST_FIRST);
+                StoredFields storedFields = searcher.storedFields();
+                List<MessageResponse> items = new ArrayList<>(Math.min(top.scoreDocs.length, limit));
+                for (int i = 0; i < top.scoreDocs.length && i < limit; i++) {
+                    items.add(toMessage(storedFields.document(top.scoreDocs[i].doc)));
+                }
+                boolean hasMore = top.scoreDocs.length > limit;
+                String nextCursor = null;
+                if (hasMore) {
+                    MessageResponse last = items.get(items.size() - 1);
+                    nextCursor = CursorCodec.encode(last.getCreatedAt().toString(), last.getId().toString());
+                }
+                return CursorPage.<MessageResponse>builder().items(items).nextCursor(nextCursor).hasMore(hasMore).build();
+            } finally {
+                searcherManager.release(searcher);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static FieldDoc after(String cursor) {
+        String[] parts = CursorCodec.decode(cursor, 2);
+        Instant createdAt;
+        UUID id;
+        try {
+            createdAt = Instant.parse(parts[0]);
+            id = UUID.fromString(parts[1]);
+        } catch (RuntimeException e) {
+            throw new BadRequestException("Invalid cursor");
+        }
+        // Doc id tie-break is never reached: (createdAt, id) is unique
+        return new FieldDoc(Integer.MAX_VALUE, Float.NaN, new Object[]{sortKey(createdAt), new BytesRef(id.toString())});
+    }
+
+    private static Document toDocument(MessageResponse message) {
+        Document doc = new Document();
+        String id = message.getId().toString();
+        doc.add(new StringField(ID, id, Field.Store.YES));
+        doc.add(new SortedDocValuesField(ID, new BytesRef(id)));
+        doc.add(new StringField(CONVERSATION_ID, message.getConversationId().toString(), Field.Store.YES));
+        doc.add(new StoredField(SENDER_ID, message.getSenderId().toString()));
+        doc.add(new TextField(CONTENT, message.getContent(), Field.Store.YES));
+        doc.add(new StoredField(STATUS, message.getStatus().name()));
+        doc.add(new StoredField(CREATED_AT, message.getCreatedAt().toString()));
+        doc.add(new NumericDocValuesField(CREATED_AT_SORT, sortKey(message.getCreatedAt())));
+        return doc;
+    }
+
+    private static MessageResponse toMessage(Document doc) {
+        return MessageResponse.builder()
+                .id(UUID.fromString(doc.get(ID)))
+                .conversationId(UUID.fromString(doc.get(CONVERSATION_ID)))
+                .senderId(UUID.fromString(doc.get(SENDER_ID)))
+                .content(doc.get(CONTENT))
+                .status(Message.MessageStatus.valueOf(doc.get(STATUS)))
+                .createdAt(Instant.parse(doc.get(CREATED_AT)))
+                .build();
+    }
+
+    // Nanosecond precision, so ties within a millisecond still sort like the database rows
+    private static long sortKey(Instant createdAt) {
+        return createdAt.getEpochSecond() * 1_000_000_000L + createdAt.getNano();
+    }
+}
@@ -0,0 +1,49 @@
+package com.nazir.realtimechat.message.search;
+
+import com.nazir.realtimechat.common.dto.CursorPage;
+import com.nazir.realtimechat.common.exception.BadRequestException;
+import com.nazir.realtimechat.common.exception.UnauthorizedException;
+import com.nazir.realtimechat.conversation.repository.ConversationMemberRepository;
+import com.nazir.realtimechat.conversation.service.ConversationMembershipCache;
+import com.nazir.realtimechat.message.dto.MessageResponse;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class MessageSearchService {
+
+    private static final int MAX_QUERY_LENGTH = 200;
+
+    private final MessageSearchIndex searchIndex;
+    private final ConversationMemberRepository memberRepository;
+    private final ConversationMembershipCache membershipCache;
+
+    /**
+     * Searches the caller's conversations, or only {@code conversationId} when given.
+     * Results are newest first and only ever come from conversations the caller belongs to.
+     */
+    public CursorPage<MessageResponse> search(UUID userId, String query, UUID conversationId, String cursor, int limit) {
+        if (!StringUtils.hasText(query) || query.length() > MAX_QUERY_LENGTH) {
+            throw new BadRequestException("Search query must be 1 to " + MAX_QUERY_LENGTH + " characters");
+        }
+        Collection<UUID> conversationIds;
+        if (conversationId != null) {
+            if (!membershipCache.isMember(conversationId, userId)) {
+                log.warn("User {} attempted to search conversation {} without membership", userId, conversationId);
+                throw new UnauthorizedException("You are not a member of this conversation");
+            }
+            conversationIds = List.of(conversationId);
+        } else {
+            conversationIds = memberRepository.findConversationIdsByUserId(userId);
+        }
+        return searchIndex.search(conversationIds, query, cursor, limit);
+    }
+}
@@ -0,0 +1,48 @@
+package com.nazir.realtimechat.message.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Timers for the message hot paths, published as {@code chat.messages.operations{operation, phase}}.
+ * Phases split where the time goes: {@code db} (write-behind persistence or queries, commit included),
+ * {@code cache} (history served from memory) and {@code broadcast} (publishing to the conversation topic).
+ */
+@Component
+@RequiredArgsConstructor
+public class MessageMetrics {
+
+    public static final String SEND = "send";
+    public static final String HISTORY = "history";
+    public static final String READ = "read";
+
+    public static final String DB = "db";
+    public static final String CACHE = "cache";
+    public static final String BROADCAST = "broadcast";
+
+    private final MeterRegistry meterRegistry;
+
+    private final Map<String, Timer> timers = new ConcurrentHashMap<>();
+
+    public Timer timer(String operation, String phase) {
+        return timers.computeIfAbsent(operation + ':' + phase, key -> Timer.builder("chat.messages.operations")
+                .description("Time spent in message operations, by phase")
+                .tag("operation", operation)
+                .tag("phase", phase)
+                .publishPercentileHistogram()
+                .register(meterRegistry));
+    }
+
+    /**
+     * Records the time since {@code startedNanos}, a {@link System#nanoTime()} reading.
+     */
+    public void recordSince(String operation, String phase, long startedNanos) {
+        timer(operation, phase).record(System.nanoTime() - startedNanos, TimeUnit.NANOSECONDS);
+    }
+}
@@ -1,98 +1,404 @@
 package com.nazir.realtimechat.message.service;
 
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.nazir.realtimechat.auth.security.AuthenticatedUser;
+import com.nazir.realtimechat.common.dto.CursorPage;
 import com.nazir.realtimechat.common.exception.BadRequestException;
-import com.nazir.realtimechat.common.exception.ResourceNotFoundException;
+import com.nazir.realtimechat.common.exception.ServiceUnavailableException;
 import com.nazir.realtimechat.common.exception.UnauthorizedException;
-import com.nazir.realtimechat.conversation.entity.Conversation;
-import com.nazir.realtimechat.conversation.repository.ConversationMemberRepository;
-import com.nazir.realtimechat.conversation.repository.ConversationRepository;
+import com.nazir.realtimechat.common.util.CursorCodec;
+import com.nazir.realtimechat.common.util.IdGenerator;
+import com.nazir.realtimechat.conversation.repository.ReadCursorRepository;
+import com.nazir.realtimechat.conversation.service.ConversationMembershipCache;
+import com.nazir.realtimechat.message.archive.MessageArchiveRepository;
+import com.nazir.realtimechat.message.dto.HistoryDirection;
 import com.nazir.realtimechat.message.dto.MessageRequest;
 import com.nazir.realtimechat.message.dto.MessageResponse;
+import com.nazir.realtimechat.message.dto.ReadCursor;
 import com.nazir.realtimechat.message.entity.Message;
+import com.nazir.realtimechat.message.pipeline.MessageWriteBehindPipeline;
+import com.nazir.realtimechat.message.pipeline.PendingMessage;
 import com.nazir.realtimechat.message.repository.MessageRepository;
-import com.nazir.realtimechat.user.entity.User;
-import com.nazir.realtimechat.user.repository.UserRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.data.domain.PageRequest;
-import org.springframework.data.domain.Pageable;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Duration;
 import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
-import java.util.stream.Collectors;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
 
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class MessageService {
 
+    // History order across tiers, matching the (created_at, id) index order of both tables
+    private static final Comparator<MessageResponse> OLDEST_FIRST = Comparator
+            .comparing(MessageResponse::getCreatedAt)
+            .thenComparing(MessageResponse::getId, IdGenerator.BINARY_ORDER);
+    private static final Comparator<MessageResponse> NEWEST_FIRST = OLDEST_FIRST.reversed();
+
+    private static final String DEDUP_KEY_PREFIX = "chat:messages:dedup:";
+
+    // Receipts for ids minted further in the future than this are rejected rather than parking the cursor ahead
+    private static final long MAX_READ_CURSOR_SKEW_MILLIS = 60_000;
+
     private final MessageRepository messageRepository;
-    private final ConversationRepository conversationRepository;
-    private final ConversationMemberRepository conversationMemberRepository;
-    private final UserRepository userRepository;
+    private final ReadCursorRepository readCursorRepository;
+    private final ConversationMembershipCache membershipCache;
+    private final MessageWriteBehindPipeline writeBehindPipeline;
+    private final RecentMessageCache recentMessageCache;
+    private final MeterRegistry meterRegistry;
+    private final MessageArchiveRepository archiveRepository;
+    private final MessageMetrics messageMetrics;
+    private final StringRedisTemplate redisTemplate;
+
+    @Value("${chat.messages.dedup.window-seconds:300}")
+    private long dedupWindowSeconds;
+
+    @Value("${chat.messages.dedup.max-entries:100000}")
+    private long dedupMaxEntries;
 
-    @Transactional
-    public MessageResponse sendMessage(UUID senderId, MessageRequest request) {
+    @Value("${chat.messages.persist-timeout-ms:10000}")
+    private long persistTimeoutMs;
+
+    @Value("${chat.archive.after-days:90}")
+    private long archiveAfterDays;
+
+    // (senderId, conversationId, clientMessageId) -> message accepted under that key within the dedup window
+    private AsyncCache<String, PendingMessage> recentSubmissions;
+
+    @PostConstruct
+    void init() {
+        recentSubmissions = Caffeine.newBuilder()
+                .maximumSize(dedupMaxEntries)
+                .expireAfterWrite(Duration.ofSeconds(dedupWindowSeconds))
+                .recordStats()
+                .buildAsync();
+        CaffeineCacheMetrics.monitor(meterRegistry, recentSubmissions, "messageDedup");
+    }
+
+    /**
+     * Accepts a message and waits until the write-behind pipeline has persisted it, for at most
+     * {@code persist-timeout-ms}. On timeout the message stays queued and may still be saved.
+     */
+    public MessageResponse sendMessage(AuthenticatedUser sender, MessageRequest request) {
+        PendingMessage pending = submitMessage(sender, request).pending();
+        try {
+            // A copy, so the timeout does not fail the pipeline's own future
+            return pending.persisted().copy().orTimeout(persistTimeoutMs, TimeUnit.MILLISECONDS).join();
+        } catch (CompletionException e) {
+            log.error("Message {} could not be persisted: {}", pending.message().getId(), e.getMessage());
+            throw new ServiceUnavailableException("Message could not be saved, please retry");
+        }
+    }
+
+    /**
+     * Validates a message and hands it to the write-behind pipeline without waiting for the database.
+     * The returned message already carries its final id and timestamp, so it can be broadcast right away.
+     * <p>
+     * A {@code clientMessageId} is claimed for the dedup window, on this node and in Redis for the
+     * others. A retry of a message that was saved returns it, flagged as a duplicate, instead of
+     * sending it again. A retry of one that was not saved (still in flight elsewhere, or failed) is
+     * sent again under the original id and timestamp, which clients dedupe by and the insert ignores.
+     */
+    public Submission submitMessage(AuthenticatedUser sender, MessageRequest request) {
+        String clientMessageId = request.getClientMessageId();
+        if (clientMessageId == null) {
+            return new Submission(accept(sender, request, IdGenerator.timeOrderedId(), now()), false);
+        }
+        String key = sender.getUserId() + ":" + request.getConversationId() + ":" + clientMessageId;
+        CompletableFuture<PendingMessage> accepting = new CompletableFuture<>();
+        CompletableFuture<PendingMessage> previous = recentSubmissions.asMap().putIfAbsent(key, accepting);
+        if (previous != null) {
+            PendingMessage original = awaitAccepted(previous);
+            log.info("Duplicate clientMessageId {} from user {}, returning message {}",
+                    clientMessageId, sender.getUserId(), original.message().getId());
+            return new Submission(original, true);
+        }
+        // The claim, validation and the pipeline hand-off run outside the cache's internal lock
+        Submission submission;
+        try {
+            submission = claimAndAccept(sender, request, key);
+        } catch (RuntimeException e) {
+            // A failed future is dropped from the cache, so a corrected retry is accepted
+            accepting.completeExceptionally(e);
+            throw e;
+        }
+        accepting.complete(submission.pending());
+        // A retry of a message that could not be saved goes back through the Redis claim, which keeps its id
+        submission.pending().persisted().whenComplete((saved, ex) -> {
+            if (ex != null) {
+                recentSubmissions.asMap().remove(key, accepting);
+            }
+        });
+        return submission;
+    }
+
+    private Submission claimAndAccept(AuthenticatedUser sender, MessageRequest request, String key) {
+        UUID id = IdGenerator.timeOrderedId();
+        Instant createdAt = now();
+        String claimed = claim(key, id, createdAt);
+        if (claimed == null) {
+            return new Submission(accept(sender, request, id, createdAt), false);
+        }
+        String[] original = claimed.split(",", 2);
+        id = UUID.fromString(original[0]);
+        createdAt = Instant.parse(original[1]);
+        if (messageRepository.existsById(id)) {
+            log.info("Duplicate clientMessageId {} from user {}, message {} is already saved",
+                    request.getClientMessageId(), sender.getUserId(), id);
+            MessageResponse saved = toMessage(sender, request, id, createdAt);
+            return new Submission(new PendingMessage(saved, sender.getUsername(),
+                    CompletableFuture.completedFuture(saved)), true);
+        }
+        log.info("Retry of clientMessageId {} from user {}, sending it again as message {}",
+                request.getClientMessageId(), sender.getUserId(), id);
+        return new Submission(accept(sender, request, id, createdAt), false);
+    }
+
+    /**
+     * Claims a dedup key in Redis for {@code id}.
+     *
+     * @return null if the claim is new, otherwise the {@code id,createdAt} it was first claimed for
+     */
+    private String claim(String key, UUID id, Instant createdAt) {
+        String redisKey = DEDUP_KEY_PREFIX + key;
+        try {
+            if (Boolean.TRUE.equals(redisTemplate.opsForValue().setIfAbsent(redisKey, id + "," + createdAt,
+                    Duration.ofSeconds(dedupWindowSeconds)))) {
+                return null;
+            }
+            // Null if the claim expired in between, and the message is then sent as new
+            return redisTemplate.opsForValue().get(redisKey);
+        } catch (Exception e) {
+            // Degrade to this node's dedup rather than refusing messages
+            log.warn("Dedup claim unavailable, deduplicating on this node only: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Waits for a concurrent submission under the same key to be accepted, rethrowing its rejection.
+     */
+    private static PendingMessage awaitAccepted(CompletableFuture<PendingMessage> accepting) {
+        try {
+            return accepting.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private PendingMessage accept(AuthenticatedUser sender, MessageRequest request, UUID id, Instant createdAt) {
+        UUID senderId = sender.getUserId();
         log.info("User {} sending message to conversation {}", senderId, request.getConversationId());
         // 1. Verify user is a member of the conversation
-        if (!conversationMemberRepository.existsByConversationIdAndUserId(request.getConversationId(), senderId)) {
+        if (!membershipCache.isMember(request.getConversationId(), senderId)) {
             log.warn("User {} attempted to send message to conversation {} without membership", senderId, request.getConversationId());
             throw new UnauthorizedException("You are not a member of this conversation");
         }
-        // 2. Get conversation and sender
-        Conversation conversation = conversationRepository.findById(request.getConversationId())
-                .orElseThrow(() -> new ResourceNotFoundException("Conversation not found"));
-        User sender = userRepository.findById(senderId)
-                .orElseThrow(() -> new ResourceNotFoundException("User not found"));
-        // 3. Create and save message
-        Message message = new Message();
-        message.setConversation(conversation);
-        message.setSender(sender);
-        message.setContent(request.getContent());
-        message.setStatus(Message.MessageStatus.SENT);
-
-        Message savedMessage = messageRepository.save(message);
-        
-        // 4. Update conversation last message timestamp
-        conversation.setLastMessageAt(savedMessage.getCreatedAt());
-        conversationRepository.save(conversation);
-        
-        log.info("Message {} saved successfully in conversation {}", savedMessage.getId(), conversation.getId());
-
-        return mapToResponse(savedMessage);
-    }
-
-    @Transactional(readOnly = true)
-    public List<MessageResponse> getMessages(UUID userId, UUID conversationId, Instant before, int limit) {
-        log.info("User {} fetching {} messages for conversation {} before {}", userId, limit, conversationId, before);
+        // 2. Carry the time-ordered id and timestamp assigned by the caller
+        MessageResponse message = toMessage(sender, request, id, createdAt);
+        // 3. Queue for batched insert; lastMessageAt is coalesced per conversation by the batch writer
+        PendingMessage pending = new PendingMessage(message, sender.getUsername());
+        long accepted = System.nanoTime();
+        writeBehindPipeline.submit(pending);
+        pending.persisted().thenRun(() -> messageMetrics.recordSince(MessageMetrics.SEND, MessageMetrics.DB, accepted));
+
+        log.info("Message {} accepted for conversation {}", message.getId(), message.getConversationId());
+        return pending;
+    }
+
+    /**
+     * Keyset-paged message history. The cursor encodes the {@code (createdAt, id)} of the last
+     * message on the previous page; without one, BEFORE starts at the newest message and AFTER at the oldest.
+     * The newest page is served from the recent-message buffer when it is large enough.
+     */
+    public CursorPage<MessageResponse> getMessages(UUID userId, UUID conversationId, String cursor,
+                                                   HistoryDirection direction, int limit) {
+        log.info("User {} fetching {} messages {} cursor in conversation {}", userId, limit, direction, conversationId);
         // 1. Verify user is a member of the conversation
-        if (!conversationMemberRepository.existsByConversationIdAndUserId(conversationId, userId)) {
+        if (!membershipCache.isMember(conversationId, userId)) {
             log.warn("User {} attempted to fetch messages for conversation {} without membership", userId, conversationId);
             throw new UnauthorizedException("You are not a member of this conversation");
         }
-        // 2. Fetch messages using cursor-based pagination
-        Pageable pageable = PageRequest.of(0, limit);
-        List<Message> messages = messageRepository.findMessagesBefore(conversationId, before, pageable);
+        long started = System.nanoTime();
+        // 2. Serve the newest page from memory
+        if (cursor == null && direction == HistoryDirection.BEFORE && limit <= recentMessageCache.getBufferSize()) {
+            RecentMessageCache.RecentPage recent = recentMessageCache.latest(conversationId, limit,
+                    n -> latest(conversationId, n));
+            String nextCursor = null;
+            if (recent.hasMore() && !recent.items().isEmpty()) {
+                MessageResponse last = recent.items().get(recent.items().size() - 1);
+                nextCursor = CursorCodec.encode(last.getCreatedAt().toString(), last.getId().toString());
+            }
+            messageMetrics.recordSince(MessageMetrics.HISTORY, MessageMetrics.CACHE, started);
+            return CursorPage.<MessageResponse>builder()
+                    .items(recent.items())
+                    .nextCursor(nextCursor)
+                    .hasMore(nextCursor != null)
+                    .build();
+        }
+        // 3. Fetch one extra row to learn whether another page exists
+        List<MessageResponse> messages;
+        if (cursor == null) {
+            messages = direction == HistoryDirection.AFTER
+                    ? earliest(conversationId, limit + 1)
+                    : latest(conversationId, limit + 1);
+        } else {
+            String[] position = CursorCodec.decode(cursor, 2);
+            Instant createdAt;
+            UUID id;
+            try {
+                createdAt = Instant.parse(position[0]);
+                id = UUID.fromString(position[1]);
+            } catch (DateTimeParseException | IllegalArgumentException e) {
+                throw new BadRequestException("Invalid cursor");
+            }
+            messages = direction == HistoryDirection.AFTER
+                    ? after(conversationId, createdAt, id, limit + 1)
+                    : before(conversationId, createdAt, id, limit + 1);
+        }
+        boolean hasMore = messages.size() > limit;
+        if (hasMore) {
+            messages = messages.subList(0, limit);
+        }
         log.info("Query returned {} messages for conversation {}", messages.size(), conversationId);
+        messageMetrics.recordSince(MessageMetrics.HISTORY, MessageMetrics.DB, started);
+
+        String nextCursor = null;
+        if (hasMore) {
+            MessageResponse last = messages.get(messages.size() - 1);
+            nextCursor = CursorCodec.encode(last.getCreatedAt().toString(), last.getId().toString());
+        }
+        return CursorPage.<MessageResponse>builder()
+                .items(messages)
+                .nextCursor(nextCursor)
+                .hasMore(hasMore)
+                .build();
+    }
 
-        return messages.stream()
-                .map(this::mapToResponse)
-                .collect(Collectors.toList());
+    /**
+     * Newest messages, newest first. History spans two tiers that can overlap in time (legacy
+     * messages are never archived), so each page reads both from the same position and merges them
+     * by {@code (createdAt, id)}. Nothing newer than the archive age is ever archived, so the archive
+     * is skipped when a full hot page does not reach back that far.
+     */
+    private List<MessageResponse> latest(UUID conversationId, int limit) {
+        List<MessageResponse> hot = toResponses(messageRepository.findLatest(conversationId, limit));
+        if (coversPage(hot, limit)) {
+            return hot;
+        }
+        return merge(hot, archiveRepository.findLatest(conversationId, limit), NEWEST_FIRST, limit);
+    }
+
+    private List<MessageResponse> before(UUID conversationId, Instant createdAt, UUID id, int limit) {
+        List<MessageResponse> hot = toResponses(messageRepository.findBefore(conversationId, createdAt, id, limit));
+        if (coversPage(hot, limit)) {
+            return hot;
+        }
+        return merge(hot, archiveRepository.findBefore(conversationId, createdAt, id, limit), NEWEST_FIRST, limit);
     }
 
-    @Transactional
-    public void markAsRead(UUID userId, UUID conversationId) {
+    private List<MessageResponse> earliest(UUID conversationId, int limit) {
+        return merge(archiveRepository.findEarliest(conversationId, limit),
+                toResponses(messageRepository.findEarliest(conversationId, limit)), OLDEST_FIRST, limit);
+    }
+
+    private List<MessageResponse> after(UUID conversationId, Instant createdAt, UUID id, int limit) {
+        List<MessageResponse> hot = toResponses(messageRepository.findAfter(conversationId, createdAt, id, limit));
+        // Nothing newer than the archive age is archived, so catch-up from a recent cursor skips the archive
+        if (!createdAt.isBefore(archiveHorizon())) {
+            return hot;
+        }
+        return merge(archiveRepository.findAfter(conversationId, createdAt, id, limit), hot, OLDEST_FIRST, limit);
+    }
+
+    /**
+     * Whether a newest-first hot page is complete without the archive: it is full and its oldest
+     * message is newer than anything the archive can hold.
+     */
+    private boolean coversPage(List<MessageResponse> hot, int limit) {
+        return hot.size() >= limit && !hot.get(hot.size() - 1).getCreatedAt().isBefore(archiveHorizon());
+    }
+
+    private Instant archiveHorizon() {
+        return Instant.now().minus(Duration.ofDays(archiveAfterDays));
+    }
+
+    private List<MessageResponse> toResponses(List<Message> messages) {
+        return messages.stream().map(this::mapToResponse).toList();
+    }
+
+    private static List<MessageResponse> merge(List<MessageResponse> first, List<MessageResponse> second,
+                                               Comparator<MessageResponse> order, int limit) {
+        return Stream.concat(first.stream(), second.stream()).sorted(order).limit(limit).toList();
+    }
+
+    /**
+     * Moves the user's read cursor forward to the newest message their client displayed and
+     * recomputes their unread counter in the same statement.
+     *
+     * @return the new cursor, or empty if the receipt was not newer than the current one
+     */
+    public Optional<ReadCursor> markAsRead(UUID userId, UUID conversationId, UUID lastReadMessageId) {
         log.info("User {} marking messages as READ in conversation {}", userId, conversationId);
         // 1. Verify membership
-        if (!conversationMemberRepository.existsByConversationIdAndUserId(conversationId, userId)) {
+        if (!membershipCache.isMember(conversationId, userId)) {
             throw new UnauthorizedException("You are not a member of this conversation");
         }
-        // 2. Update status
-        int updatedCount = messageRepository.markMessagesAsRead(conversationId, userId, Message.MessageStatus.READ);
-        log.info("Marked {} messages as READ for user {} in conversation {}", updatedCount, userId, conversationId);
+        if (IdGenerator.isTimeOrdered(lastReadMessageId)
+                && IdGenerator.timestampOf(lastReadMessageId) > System.currentTimeMillis() + MAX_READ_CURSOR_SKEW_MILLIS) {
+            throw new BadRequestException("Invalid last read message ID");
+        }
+        // 2. Move the read cursor (single-row update)
+        Instant readAt = Instant.now().truncatedTo(ChronoUnit.MICROS);
+        if (!readCursorRepository.moveForward(conversationId, userId, lastReadMessageId, readAt)) {
+            log.debug("Read cursor of user {} in conversation {} is already at or past {}", userId, conversationId, lastReadMessageId);
+            return Optional.empty();
+        }
+        log.info("Read cursor of user {} in conversation {} moved to message {}", userId, conversationId, lastReadMessageId);
+
+        return Optional.of(ReadCursor.builder()
+                .conversationId(conversationId)
+                .userId(userId)
+                .lastReadMessageId(lastReadMessageId)
+                .lastReadAt(readAt)
+                .build());
+    }
+
+    private static MessageResponse toMessage(AuthenticatedUser sender, MessageRequest request, UUID id, Instant createdAt) {
+        return MessageResponse.builder()
+                .id(id)
+                .conversationId(request.getConversationId())
+                .senderId(sender.getUserId())
+                .content(request.getContent())
+                .status(Message.MessageStatus.SENT)
+                .createdAt(createdAt)
+                .build();
+    }
+
+    // The column's microsecond precision, so the broadcast timestamp matches the saved one
+    private static Instant now() {
+        return Instant.now().truncatedTo(ChronoUnit.MICROS);
     }
 
     private MessageResponse mapToResponse(Message message) {
@@ -105,4 +411,7 @@ public class MessageService {
                 .createdAt(message.getCreatedAt())
                 .build();
     }
+
+    public record Submission(PendingMessage pending, boolean duplicate) {
+    }
 }
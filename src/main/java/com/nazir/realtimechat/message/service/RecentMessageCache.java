@@ -0,0 +1,252 @@
+package com.nazir.realtimechat.message.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.nazir.realtimechat.config.NodeIdentity;
+import com.nazir.realtimechat.message.dto.MessageResponse;
+import com.nazir.realtimechat.message.pipeline.PersistedBatchListener;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+/**
+ * Node-local ring buffer of the newest persisted messages per conversation, so the first page
+ * of history is served without a database round trip. Buffers are seeded from the database on
+ * first read and appended to as writes commit, on this node directly and on the others over
+ * Redis pub/sub, so a hot conversation's buffer stays loaded on every node. Cold conversations
+ * are evicted by idle time and by an approximate memory budget. A missed update leaves a buffer
+ * stale until it idles out.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class RecentMessageCache implements MessageListener, PersistedBatchListener {
+
+    private static final String APPENDED_CHANNEL = "chat:recent-messages:appended";
+
+    // Rough per-message overhead of the response object, its UUIDs and Instant, on top of the content
+    private static final int MESSAGE_OVERHEAD_BYTES = 200;
+
+    static final Comparator<MessageResponse> NEWEST_FIRST = Comparator
+            .comparing(MessageResponse::getCreatedAt)
+            .thenComparing(MessageResponse::getId)
+            .reversed();
+
+    private final StringRedisTemplate redisTemplate;
+    private final RedisMessageListenerContainer listenerContainer;
+    private final MeterRegistry meterRegistry;
+    private final ObjectMapper objectMapper;
+    private final NodeIdentity nodeIdentity;
+
+    @Value("${chat.recent-messages.size:50}")
+    private int bufferSize;
+
+    @Value("${chat.recent-messages.max-memory-mb:64}")
+    private long maxMemoryMb;
+
+    @Value("${chat.recent-messages.idle-minutes:10}")
+    private long idleMinutes;
+
+    private AsyncCache<UUID, RecentMessages> buffers;
+
+    @PostConstruct
+    void init() {
+        buffers = Caffeine.newBuilder()
+                .maximumWeight(maxMemoryMb * 1024 * 1024)
+                .weigher((UUID conversationId, RecentMessages recent) -> recent.weight())
+                .expireAfterAccess(Duration.ofMinutes(idleMinutes))
+                .recordStats()
+                .buildAsync();
+        CaffeineCacheMetrics.monitor(meterRegistry, buffers, "recentMessages");
+        listenerContainer.addMessageListener(this, new ChannelTopic(APPENDED_CHANNEL));
+    }
+
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    /**
+     * Newest messages of a conversation, newest first, loading the buffer on a miss.
+     *
+     * @param loader fetches up to the given number of newest messages, newest first
+     */
+    public RecentPage latest(UUID conversationId, int limit, Function<Integer, List<MessageResponse>> loader) {
+        CompletableFuture<RecentMessages> recent = buffers.getIfPresent(conversationId);
+        if (recent == null) {
+            // Loaded outside the cache's internal lock, so a virtual thread does not pin its carrier on the query.
+            // Messages committed meanwhile are chained onto the pending buffer by append()
+            CompletableFuture<RecentMessages> loading = new CompletableFuture<>();
+            recent = buffers.asMap().putIfAbsent(conversationId, loading);
+            if (recent == null) {
+                try {
+                    // One extra row tells whether the buffer holds the conversation's entire history
+                    List<MessageResponse> loaded = loader.apply(bufferSize + 1);
+                    boolean complete = loaded.size() <= bufferSize;
+                    loading.complete(new RecentMessages(bufferSize, loaded.subList(0, Math.min(loaded.size(), bufferSize)), complete));
+                } catch (RuntimeException e) {
+                    // A failed future is dropped from the cache, so the next read loads again
+                    loading.completeExceptionally(e);
+                    throw e;
+                }
+                recent = loading;
+            }
+        }
+        return recent.join().page(limit);
+    }
+
+    /**
+     * Adds messages this node has just persisted to loaded buffers, here and on every other node.
+     * Buffers that are not loaded are left alone: they will read the committed messages on their first load.
+     */
+    @Override
+    public void onPersisted(List<MessageResponse> messages) {
+        append(messages);
+        try {
+            List<SharedMessage> shared = messages.stream().map(SharedMessage::of).toList();
+            redisTemplate.convertAndSend(APPENDED_CHANNEL,
+                    objectMapper.writeValueAsString(new AppendedMessages(nodeIdentity.getNodeId(), shared)));
+        } catch (Exception e) {
+            // Other nodes keep serving their buffer without these messages until it idles out
+            log.warn("Failed to publish {} recent messages to other nodes: {}", messages.size(), e.getMessage());
+        }
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        try {
+            AppendedMessages appended = objectMapper.readValue(message.getBody(), AppendedMessages.class);
+            if (!nodeIdentity.isSelf(appended.origin())) {
+                append(appended.messages().stream().map(SharedMessage::toResponse).toList());
+            }
+        } catch (Exception e) {
+            log.warn("Ignoring malformed recent-message update: {}", e.getMessage());
+        }
+    }
+
+    private void append(List<MessageResponse> messages) {
+        for (MessageResponse message : messages) {
+            buffers.asMap().computeIfPresent(message.getConversationId(), (id, recent) -> recent.thenApply(r -> r.add(message)));
+        }
+    }
+
+    public record RecentPage(List<MessageResponse> items, boolean hasMore) {
+    }
+
+    private record AppendedMessages(String origin, List<SharedMessage> messages) {
+    }
+
+    // The API form of a message rounds createdAt to milliseconds; history cursors need it exact
+    private record SharedMessage(UUID id, UUID conversationId, UUID senderId, String content,
+                                 com.nazir.realtimechat.message.entity.Message.MessageStatus status, Instant createdAt) {
+
+        static SharedMessage of(MessageResponse message) {
+            return new SharedMessage(message.getId(), message.getConversationId(), message.getSenderId(),
+                    message.getContent(), message.getStatus(), message.getCreatedAt());
+        }
+
+        MessageResponse toResponse() {
+            return MessageResponse.builder()
+                    .id(id)
+                    .conversationId(conversationId)
+                    .senderId(senderId)
+                    .content(content)
+                    .status(status)
+                    .createdAt(createdAt)
+                    .build();
+        }
+    }
+
+    /**
+     * Fixed-capacity ring of the newest messages of one conversation. {@code complete} stays true
+     * while nothing older than the buffer exists in the database.
+     */
+    static final class RecentMessages {
+
+        private final MessageResponse[] ring;
+        private int head;
+        private int size;
+        private boolean complete;
+        private int weight;
+
+        RecentMessages(int capacity, List<MessageResponse> newestFirst, boolean complete) {
+            this.ring = new MessageResponse[capacity];
+            this.complete = complete;
+            for (int i = newestFirst.size() - 1; i >= 0; i--) {
+                push(newestFirst.get(i));
+            }
+        }
+
+        synchronized RecentMessages add(MessageResponse message) {
+            MessageResponse newest = size > 0 ? ring[(head + size - 1) % ring.length] : null;
+            if (newest == null || NEWEST_FIRST.compare(message, newest) < 0) {
+                push(message);
+                return this;
+            }
+            // Out-of-order commit from a concurrent batch: rebuild in order, dropping duplicates
+            List<MessageResponse> all = snapshot();
+            if (all.stream().anyMatch(m -> m.getId().equals(message.getId()))) {
+                return this;
+            }
+            all.add(message);
+            all.sort(NEWEST_FIRST);
+            boolean overflow = all.size() > ring.length;
+            return new RecentMessages(ring.length,
+                    all.subList(0, Math.min(all.size(), ring.length)), complete && !overflow);
+        }
+
+        synchronized RecentPage page(int limit) {
+            List<MessageResponse> all = snapshot();
+            boolean hasMore = all.size() > limit || !complete;
+            return new RecentPage(List.copyOf(all.subList(0, Math.min(limit, all.size()))), hasMore);
+        }
+
+        synchronized int weight() {
+            return weight;
+        }
+
+        private void push(MessageResponse message) {
+            if (size == ring.length) {
+                weight -= weightOf(ring[head]);
+                ring[head] = null;
+                head = (head + 1) % ring.length;
+                size--;
+                complete = false;
+            }
+            ring[(head + size) % ring.length] = message;
+            size++;
+            weight += weightOf(message);
+        }
+
+        private List<MessageResponse> snapshot() {
+            List<MessageResponse> newestFirst = new ArrayList<>(size);
+            for (int i = size - 1; i >= 0; i--) {
+                newestFirst.add(ring[(head + i) % ring.length]);
+            }
+            return newestFirst;
+        }
+
+        private static int weightOf(MessageResponse message) {
+            String content = message.getContent();
+            return MESSAGE_OVERHEAD_BYTES + (content != null ? content.length() * 2 : 0);
+        }
+    }
+}
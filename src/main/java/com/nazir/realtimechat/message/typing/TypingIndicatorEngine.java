@@ -0,0 +1,172 @@
+package com.nazir.realtimechat.message.typing;
+
+import com.nazir.realtimechat.common.constants.BrokerHeaderConstants;
+import com.nazir.realtimechat.common.exception.UnauthorizedException;
+import com.nazir.realtimechat.conversation.service.ConversationMembershipCache;
+import com.nazir.realtimechat.message.dto.TypingState;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * In-memory typing indicators. Typing frames only update state: repeated "typing" frames from a
+ * user extend their timeout, and a user who sends nothing for {@code ttl-ms} is stopped by the server.
+ * A dedicated broadcaster thread sends at most one {@link TypingState} per conversation per
+ * {@code broadcast-interval-ms}, so typing floods never touch the database or the message send path.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class TypingIndicatorEngine {
+
+    private final SimpMessagingTemplate messagingTemplate;
+    private final ConversationMembershipCache membershipCache;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${chat.typing.ttl-ms:5000}")
+    private long ttlMs;
+
+    @Value("${chat.typing.broadcast-interval-ms:500}")
+    private long broadcastIntervalMs;
+
+    private final Map<UUID, ConversationTyping> conversations = new ConcurrentHashMap<>();
+    private ScheduledExecutorService broadcaster;
+    private Counter recordedCounter;
+    private Counter broadcastCounter;
+
+    @PostConstruct
+    void start() {
+        recordedCounter = meterRegistry.counter("chat.typing.recorded");
+        broadcastCounter = meterRegistry.counter("chat.typing.broadcasts");
+        broadcaster = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "typing-broadcaster");
+            thread.setDaemon(true);
+            return thread;
+        });
+        broadcaster.scheduleWithFixedDelay(this::broadcastChanges, broadcastIntervalMs, broadcastIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void stop() {
+        broadcaster.shutdownNow();
+    }
+
+    /**
+     * Records a typing frame; the change is broadcast on the next tick.
+     *
+     * @throws UnauthorizedException if the user is not a member of the conversation
+     */
+    public void record(UUID conversationId, UUID userId, boolean typing) {
+        if (!membershipCache.isMember(conversationId, userId)) {
+            throw new UnauthorizedException("You are not a member of this conversation");
+        }
+        recordedCounter.increment();
+        long expiresAt = System.currentTimeMillis() + ttlMs;
+        conversations.compute(conversationId, (id, state) -> {
+            if (state == null) {
+                if (!typing) {
+                    return null;
+                }
+                state = new ConversationTyping();
+            }
+            if (typing) {
+                state.start(userId, expiresAt);
+            } else {
+                state.stop(userId);
+            }
+            return state;
+        });
+    }
+
+    void broadcastChanges() {
+        long now = System.currentTimeMillis();
+        for (UUID conversationId : conversations.keySet()) {
+            TypingState[] changes = new TypingState[1];
+            conversations.computeIfPresent(conversationId, (id, state) -> {
+                changes[0] = state.drainChanges(id, now);
+                return state.isIdle() ? null : state;
+            });
+            if (changes[0] == null) {
+                continue;
+            }
+            try {
+                messagingTemplate.convertAndSend("/topic/conversation." + conversationId, changes[0],
+                        Map.of(BrokerHeaderConstants.PRIORITY_HEADER, BrokerHeaderConstants.PRIORITY_LOW));
+                broadcastCounter.increment();
+            } catch (Exception e) {
+                log.warn("Failed to broadcast typing state for conversation {}: {}", conversationId, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Typing users of one conversation and the changes not yet broadcast. Only accessed inside
+     * {@code compute} on the owning map entry, so it needs no locking of its own.
+     */
+    private static final class ConversationTyping {
+
+        private final Map<UUID, Long> expiresAt = new HashMap<>();
+        private final Set<UUID> started = new LinkedHashSet<>();
+        private final Set<UUID> stopped = new LinkedHashSet<>();
+
+        void start(UUID userId, long expiry) {
+            if (expiresAt.put(userId, expiry) == null) {
+                stopped.remove(userId);
+                started.add(userId);
+            }
+        }
+
+        void stop(UUID userId) {
+            if (expiresAt.remove(userId) != null && !started.remove(userId)) {
+                // Only announce a stop for a start that was already broadcast
+                stopped.add(userId);
+            }
+        }
+
+        TypingState drainChanges(UUID conversationId, long now) {
+            Iterator<Map.Entry<UUID, Long>> it = expiresAt.entrySet().iterator();
+            while (it.hasNext()) {
+                Map.Entry<UUID, Long> entry = it.next();
+                if (entry.getValue() <= now) {
+                    it.remove();
+                    if (!started.remove(entry.getKey())) {
+                        stopped.add(entry.getKey());
+                    }
+                }
+            }
+            if (started.isEmpty() && stopped.isEmpty()) {
+                return null;
+            }
+            TypingState changes = TypingState.builder()
+                    .conversationId(conversationId)
+                    .startedUserIds(List.copyOf(started))
+                    .stoppedUserIds(List.copyOf(stopped))
+                    .build();
+            started.clear();
+            stopped.clear();
+            return changes;
+        }
+
+        boolean isIdle() {
+            return expiresAt.isEmpty() && started.isEmpty() && stopped.isEmpty();
+        }
+    }
+}
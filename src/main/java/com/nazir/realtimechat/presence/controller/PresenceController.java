@@ -1,17 +1,24 @@
 package com.nazir.realtimechat.presence.controller;
 
+import com.nazir.realtimechat.common.dto.CursorPage;
+import com.nazir.realtimechat.presence.dto.PresenceQueryRequest;
+import com.nazir.realtimechat.presence.dto.PresenceResponse;
 import com.nazir.realtimechat.presence.service.PresenceService;
+import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 import com.nazir.realtimechat.common.dto.ApiResponse;
 import java.time.LocalDateTime;
-import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 
 @Slf4j
@@ -20,12 +27,27 @@ import java.util.Map;
 @RequiredArgsConstructor
 public class PresenceController {
 
+    private static final int MAX_PAGE_SIZE = 200;
+
     private final PresenceService presenceService;
 
     @GetMapping
-    public ResponseEntity<ApiResponse<Map<String, Map<String, Object>>>> getAllPresence() {
-        Map<String, Map<String, Object>> presence = presenceService.getAllPresence();
-        ApiResponse<Map<String, Map<String, Object>>> resp = ApiResponse.<Map<String, Map<String, Object>>>builder()
+    public ResponseEntity<ApiResponse<CursorPage<PresenceResponse>>> getOnlineUsers(
+            @RequestParam(required = false) String cursor, @RequestParam(defaultValue = "50") int limit) {
+        CursorPage<PresenceResponse> page = presenceService.getOnlineUsers(cursor, Math.min(Math.max(limit, 1), MAX_PAGE_SIZE));
+        ApiResponse<CursorPage<PresenceResponse>> resp = ApiResponse.<CursorPage<PresenceResponse>>builder()
+                .success(true)
+                .data(page)
+                .message("Presence data fetched successfully")
+                .timestamp(LocalDateTime.now())
+                .build();
+        return ResponseEntity.ok(resp);
+    }
+
+    @PostMapping("/query")
+    public ResponseEntity<ApiResponse<List<PresenceResponse>>> queryPresence(@Valid @RequestBody PresenceQueryRequest request) {
+        List<PresenceResponse> presence = presenceService.getPresence(request.getUsernames());
+        ApiResponse<List<PresenceResponse>> resp = ApiResponse.<List<PresenceResponse>>builder()
                 .success(true)
                 .data(presence)
                 .message("Presence data fetched successfully")
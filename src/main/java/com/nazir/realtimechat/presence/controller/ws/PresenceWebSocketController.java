@@ -0,0 +1,31 @@
+package com.nazir.realtimechat.presence.controller.ws;
+
+import com.nazir.realtimechat.presence.service.PresenceNotifier;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.messaging.handler.annotation.Header;
+import org.springframework.messaging.handler.annotation.MessageMapping;
+import org.springframework.messaging.handler.annotation.Payload;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.stereotype.Controller;
+
+import java.util.List;
+
+@Slf4j
+@Controller
+@RequiredArgsConstructor
+public class PresenceWebSocketController {
+
+    private final PresenceNotifier presenceNotifier;
+
+    /**
+     * Adds users to this session's presence interest set, e.g. after starting a new chat.
+     * Destination: /app/presence.watch
+     * Pushes to: /user/queue/presence
+     */
+    @MessageMapping("/presence.watch")
+    public void watch(@Header(SimpMessageHeaderAccessor.SESSION_ID_HEADER) String sessionId, @Payload List<String> usernames) {
+        log.debug("Session {} watching presence of {} more users", sessionId, usernames.size());
+        presenceNotifier.watch(sessionId, usernames);
+    }
+}
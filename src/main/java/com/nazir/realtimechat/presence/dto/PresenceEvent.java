@@ -0,0 +1,21 @@
+package com.nazir.realtimechat.presence.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Presence transition pushed to watchers on {@code /user/queue/presence}.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class PresenceEvent {
+    private String username;
+    private String status;
+    private Long lastSeen;
+    @Builder.Default
+    private String type = "PRESENCE";
+}
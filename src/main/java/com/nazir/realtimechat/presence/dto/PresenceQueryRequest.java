@@ -0,0 +1,17 @@
+package com.nazir.realtimechat.presence.dto;
+
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.List;
+
+@Getter
+@Setter
+public class PresenceQueryRequest {
+
+    @NotEmpty
+    @Size(max = 500)
+    private List<String> usernames;
+}
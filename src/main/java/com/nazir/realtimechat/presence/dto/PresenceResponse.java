@@ -0,0 +1,17 @@
+package com.nazir.realtimechat.presence.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+
+@Getter
+@Builder
+@AllArgsConstructor
+public class PresenceResponse {
+
+    private String username;
+
+    private String status;
+
+    private Long lastSeen;
+}
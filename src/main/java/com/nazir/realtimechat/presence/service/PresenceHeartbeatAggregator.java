@@ -0,0 +1,103 @@
+package com.nazir.realtimechat.presence.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Coalesces presence heartbeats from inbound STOMP frames. Activity is only recorded in memory;
+ * a scheduled flush refreshes every active user's heartbeat in one pipelined Redis batch, so each
+ * user costs at most one Redis write per interval regardless of how many frames they send.
+ * <p>
+ * It also tracks the STOMP sessions each user has open on this node. A user goes offline only when
+ * their last session here closes, and a flush puts users with a live session back online if the
+ * registry lost them (swept while idle, or marked offline by a session closing on another node).
+ */
+@Slf4j
+@Component
+public class PresenceHeartbeatAggregator {
+
+    private final PresenceService presenceService;
+    private final Set<String> activeUsers = ConcurrentHashMap.newKeySet();
+    // username -> ids of the user's open sessions on this node
+    private final Map<String, Set<String>> liveSessions = new ConcurrentHashMap<>();
+    private final Counter recordedCounter;
+    private final Counter flushedCounter;
+
+    public PresenceHeartbeatAggregator(PresenceService presenceService, MeterRegistry meterRegistry) {
+        this.presenceService = presenceService;
+        this.recordedCounter = meterRegistry.counter("chat.presence.heartbeats.recorded");
+        this.flushedCounter = meterRegistry.counter("chat.presence.heartbeats.flushed");
+    }
+
+    public void recordActivity(String username) {
+        activeUsers.add(username);
+        recordedCounter.increment();
+    }
+
+    public void sessionOpened(String username, String sessionId) {
+        liveSessions.computeIfAbsent(username, u -> ConcurrentHashMap.newKeySet()).add(sessionId);
+    }
+
+    /**
+     * Forgets a closed session. Spring may report the same close twice (client DISCONNECT, then the
+     * socket closing), so sessions are tracked by id rather than counted.
+     *
+     * @return true if this was the user's last open session on this node
+     */
+    public boolean sessionClosed(String username, String sessionId) {
+        boolean[] last = {false};
+        liveSessions.computeIfPresent(username, (u, sessions) -> {
+            if (sessions.remove(sessionId) && sessions.isEmpty()) {
+                last[0] = true;
+            }
+            return sessions.isEmpty() ? null : sessions;
+        });
+        if (last[0]) {
+            // Drop pending activity so the next flush does not bring them back
+            activeUsers.remove(username);
+        }
+        return last[0];
+    }
+
+    @Scheduled(fixedDelayString = "${chat.presence.heartbeat-flush-interval-ms:30000}")
+    public void flush() {
+        List<String> batch = new ArrayList<>(activeUsers.size());
+        for (String username : activeUsers) {
+            if (activeUsers.remove(username)) {
+                batch.add(username);
+            }
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+        List<String> connected = new ArrayList<>(batch.size());
+        List<String> others = new ArrayList<>();
+        for (String username : batch) {
+            (liveSessions.containsKey(username) ? connected : others).add(username);
+        }
+        try {
+            presenceService.refreshHeartbeats(connected, others);
+            flushedCounter.increment(batch.size());
+            log.debug("Refreshed presence heartbeat for {} users", batch.size());
+        } catch (Exception e) {
+            // Put them back so the next interval retries; the TTL is far longer than the interval
+            activeUsers.addAll(batch);
+            log.warn("Failed to flush {} presence heartbeats: {}", batch.size(), e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    void flushOnShutdown() {
+        flush();
+    }
+}
@@ -0,0 +1,154 @@
+package com.nazir.realtimechat.presence.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nazir.realtimechat.auth.security.AuthenticatedUser;
+import com.nazir.realtimechat.common.constants.BrokerHeaderConstants;
+import com.nazir.realtimechat.conversation.repository.ConversationMemberRepository;
+import com.nazir.realtimechat.presence.dto.PresenceEvent;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+import org.springframework.web.socket.messaging.SessionSubscribeEvent;
+import org.springframework.web.socket.messaging.SessionUnsubscribeEvent;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Pushes presence transitions to the sessions that care about them. A session subscribing to
+ * {@code /user/queue/presence} watches its conversation partners (plus anyone added through
+ * {@code /app/presence.watch}). Watches are kept in an inverted index from watched username to
+ * watching session ids, so a transition is delivered without scanning all sessions.
+ * Transitions arrive over Redis pub/sub from whichever node observed them. Only transitions are
+ * pushed; clients load the initial state once with {@code POST /api/presence/query}.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class PresenceNotifier implements MessageListener {
+
+    public static final String PRESENCE_DESTINATION = "/queue/presence";
+    private static final String SUBSCRIBE_DESTINATION = "/user" + PRESENCE_DESTINATION;
+    private static final int MAX_WATCHES_PER_SESSION = 1000;
+
+    private final ConversationMemberRepository conversationMemberRepository;
+    private final SimpMessagingTemplate messagingTemplate;
+    private final RedisMessageListenerContainer listenerContainer;
+    private final ObjectMapper objectMapper;
+
+    // watched username -> watching session ids
+    private final Map<String, Set<String>> watchersByUser = new ConcurrentHashMap<>();
+    // session id -> presence subscription state
+    private final Map<String, Watcher> watchersBySession = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    void init() {
+        listenerContainer.addMessageListener(this, new ChannelTopic(PresenceService.EVENTS_CHANNEL));
+    }
+
+    @EventListener
+    public void onSubscribe(SessionSubscribeEvent event) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.wrap(event.getMessage());
+        if (!SUBSCRIBE_DESTINATION.equals(accessor.getDestination()) || event.getUser() == null) {
+            return;
+        }
+        String sessionId = accessor.getSessionId();
+        AuthenticatedUser user = AuthenticatedUser.from(event.getUser());
+        Watcher watcher = new Watcher(accessor.getSubscriptionId());
+        if (watchersBySession.putIfAbsent(sessionId, watcher) != null) {
+            return;
+        }
+        Set<String> partners = conversationMemberRepository.findPartnerUsernames(user.getUserId());
+        log.debug("Session {} of {} watching presence of {} partners", sessionId, user.getUsername(), partners.size());
+        watch(sessionId, partners);
+    }
+
+    /**
+     * Adds usernames to a session's interest set.
+     */
+    public void watch(String sessionId, Collection<String> usernames) {
+        Watcher watcher = watchersBySession.get(sessionId);
+        if (watcher == null) {
+            return;
+        }
+        for (String username : usernames) {
+            if (watcher.watched.size() >= MAX_WATCHES_PER_SESSION) {
+                break;
+            }
+            if (watcher.watched.add(username)) {
+                watchersByUser.computeIfAbsent(username, u -> ConcurrentHashMap.newKeySet()).add(sessionId);
+            }
+        }
+    }
+
+    @EventListener
+    public void onUnsubscribe(SessionUnsubscribeEvent event) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.wrap(event.getMessage());
+        Watcher watcher = watchersBySession.get(accessor.getSessionId());
+        if (watcher != null && watcher.subscriptionId.equals(accessor.getSubscriptionId())) {
+            removeSession(accessor.getSessionId());
+        }
+    }
+
+    @EventListener
+    public void onDisconnect(SessionDisconnectEvent event) {
+        removeSession(event.getSessionId());
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        try {
+            PresenceEvent event = objectMapper.readValue(message.getBody(), PresenceEvent.class);
+            Set<String> sessions = watchersByUser.get(event.getUsername());
+            if (sessions != null) {
+                sessions.forEach(sessionId -> sendToSession(sessionId, event));
+            }
+        } catch (Exception e) {
+            log.error("Failed to dispatch presence transition: {}", e.getMessage());
+        }
+    }
+
+    private void removeSession(String sessionId) {
+        Watcher watcher = watchersBySession.remove(sessionId);
+        if (watcher == null) {
+            return;
+        }
+        for (String username : watcher.watched) {
+            watchersByUser.computeIfPresent(username, (u, sessions) -> {
+                sessions.remove(sessionId);
+                return sessions.isEmpty() ? null : sessions;
+            });
+        }
+    }
+
+    private void sendToSession(String sessionId, PresenceEvent event) {
+        SimpMessageHeaderAccessor headers = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        headers.setSessionId(sessionId);
+        headers.setNativeHeader(BrokerHeaderConstants.COALESCE_KEY_HEADER, "presence:" + event.getUsername());
+        headers.setLeaveMutable(true);
+        MessageHeaders messageHeaders = headers.getMessageHeaders();
+        messagingTemplate.convertAndSendToUser(sessionId, PRESENCE_DESTINATION, event, messageHeaders);
+    }
+
+    private static final class Watcher {
+        private final String subscriptionId;
+        private final Set<String> watched = ConcurrentHashMap.newKeySet();
+
+        private Watcher(String subscriptionId) {
+            this.subscriptionId = subscriptionId;
+        }
+    }
+}
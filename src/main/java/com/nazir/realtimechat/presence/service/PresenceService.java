@@ -1,54 +1,147 @@
 package com.nazir.realtimechat.presence.service;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nazir.realtimechat.common.dto.CursorPage;
+import com.nazir.realtimechat.common.util.CursorCodec;
+import com.nazir.realtimechat.presence.dto.PresenceEvent;
+import com.nazir.realtimechat.presence.dto.PresenceResponse;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.connection.Limit;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.connection.StringRedisConnection.StringTuple;
+import org.springframework.data.redis.connection.DefaultStringTuple;
+import org.springframework.data.redis.connection.RedisZSetCommands.ZAddArgs;
+import org.springframework.data.redis.core.RedisCallback;
 import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
 
+/**
+ * Presence registry backed by two sorted sets: {@code presence:online} scores each online user by
+ * their last heartbeat (epoch millis), and {@code presence:online:lex} holds the same members with
+ * score 0 so they can be paged by username. A user is online while their heartbeat is younger than
+ * the TTL; a periodic sweep moves stale entries to their last-seen key in bounded batches.
+ */
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class PresenceService {
 
+    public static final String EVENTS_CHANNEL = "chat:presence:events";
+
     private final StringRedisTemplate redisTemplate;
-    private static final String PRESENCE_KEY_PREFIX = "user:presence:";
+    private final ObjectMapper objectMapper;
+    private static final String ONLINE_KEY = "presence:online";
+    private static final String ONLINE_LEX_KEY = "presence:online:lex";
     private static final String LAST_SEEN_KEY_PREFIX = "user:lastSeen:";
     private static final long PRESENCE_TTL_MINUTES = 5;
+    private static final int SWEEP_BATCH_SIZE = 500;
+
+    // Atomically moves up to ARGV[2] users whose heartbeat is older than ARGV[1] to their last-seen key.
+    // Returns a flat list of (username, lastSeen) pairs.
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> SWEEP_SCRIPT = new DefaultRedisScript<>("""
+            local expired = redis.call('ZRANGEBYSCORE', KEYS[1], '-inf', ARGV[1], 'LIMIT', 0, tonumber(ARGV[2]))
+            local result = {}
+            for _, user in ipairs(expired) do
+                local lastSeen = redis.call('ZSCORE', KEYS[1], user)
+                redis.call('SET', ARGV[3] .. user, lastSeen)
+                redis.call('ZREM', KEYS[1], user)
+                redis.call('ZREM', KEYS[2], user)
+                table.insert(result, user)
+                table.insert(result, lastSeen)
+            end
+            return result
+            """, List.class);
 
     /**
-     * Mark a user as online in Redis with a TTL.
+     * Mark a user as online by recording a heartbeat.
      */
     public void markOnline(String username) {
-        String key = PRESENCE_KEY_PREFIX + username;
         log.debug("Marking user {} as ONLINE in Redis", username);
-        redisTemplate.opsForValue().set(key, "online", PRESENCE_TTL_MINUTES, TimeUnit.MINUTES);
+        long now = System.currentTimeMillis();
+        redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection conn = (StringRedisConnection) connection;
+            conn.zAdd(ONLINE_KEY, now, username);
+            conn.zAdd(ONLINE_LEX_KEY, 0, username);
+            return null;
+        });
+        publishTransition(PresenceEvent.builder().username(username).status("online").build());
     }
 
     /**
-     * Mark a user as offline by deleting their presence key and storing last seen.
+     * Refresh the heartbeat of many users at once, in a single pipeline. Users with a live session
+     * ({@code connected}) are added back if the registry lost them, and that is published as an
+     * online transition. The others are only updated while still in the registry (ZADD XX), so a
+     * late flush cannot bring back a user who went offline after their activity was recorded.
+     */
+    public void refreshHeartbeats(List<String> connected, Collection<String> others) {
+        if (connected.isEmpty() && others.isEmpty()) {
+            return;
+        }
+        double now = System.currentTimeMillis();
+        Set<StringTuple> heartbeats = new HashSet<>();
+        Set<StringTuple> lexEntries = new HashSet<>();
+        for (String username : others) {
+            heartbeats.add(new DefaultStringTuple(username, now));
+            lexEntries.add(new DefaultStringTuple(username, 0));
+        }
+        List<Object> results = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection conn = (StringRedisConnection) connection;
+            // One reply per connected user, in order: true when the user was missing and got added
+            for (String username : connected) {
+                conn.zAdd(ONLINE_KEY, now, username);
+            }
+            for (String username : connected) {
+                conn.zAdd(ONLINE_LEX_KEY, 0, username);
+            }
+            if (!heartbeats.isEmpty()) {
+                conn.zAdd(ONLINE_KEY, heartbeats, ZAddArgs.empty().ifExists());
+                conn.zAdd(ONLINE_LEX_KEY, lexEntries, ZAddArgs.empty().ifExists());
+            }
+            return null;
+        });
+        for (int i = 0; i < connected.size(); i++) {
+            if (Boolean.TRUE.equals(results.get(i))) {
+                log.info("User {} is active on a live session, marking ONLINE again", connected.get(i));
+                publishTransition(PresenceEvent.builder().username(connected.get(i)).status("online").build());
+            }
+        }
+    }
+
+    /**
+     * Mark a user as offline by removing them from the registry and storing last seen.
      */
     public void markOffline(String username) {
-        String presenceKey = PRESENCE_KEY_PREFIX + username;
-        String lastSeenKey = LAST_SEEN_KEY_PREFIX + username;
-        
         log.info("Marking user {} as OFFLINE in Redis and updating last seen", username);
-        redisTemplate.delete(presenceKey);
-        
-        // Store current epoch milliseconds as last seen
-        redisTemplate.opsForValue().set(lastSeenKey, String.valueOf(System.currentTimeMillis()));
+        long now = System.currentTimeMillis();
+        redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection conn = (StringRedisConnection) connection;
+            conn.zRem(ONLINE_KEY, username);
+            conn.zRem(ONLINE_LEX_KEY, username);
+            // Store current epoch milliseconds as last seen
+            conn.set(LAST_SEEN_KEY_PREFIX + username, String.valueOf(now));
+            return null;
+        });
+        publishTransition(PresenceEvent.builder().username(username).status("offline").lastSeen(now).build());
     }
 
     /**
      * Check if a user is currently online.
      */
     public boolean isOnline(String username) {
-        String key = PRESENCE_KEY_PREFIX + username;
-        return Boolean.TRUE.equals(redisTemplate.hasKey(key));
+        return isFresh(redisTemplate.opsForZSet().score(ONLINE_KEY, username));
     }
 
     /**
@@ -62,26 +155,100 @@ public class PresenceService {
     }
 
     /**
-     * Get presence for all users by scanning keys.
+     * Presence of the given users, resolved with a single ZMSCORE for the online check.
      */
-    public Map<String, Map<String, Object>> getAllPresence() {
-        Set<String> keys = redisTemplate.keys(PRESENCE_KEY_PREFIX + "*");
-        Map<String, Map<String, Object>> result = new HashMap<>();
-        
-        if (keys != null) {
-            for (String key : keys) {
-                String username = key.substring(PRESENCE_KEY_PREFIX.length());
-                result.put(username, Map.of(
-                    "username", username,
-                    "status", "online",
-                    "lastSeen", ""
-                ));
-            }
+    public List<PresenceResponse> getPresence(List<String> usernames) {
+        List<Double> heartbeats = redisTemplate.opsForZSet().score(ONLINE_KEY, usernames.toArray());
+        List<String> lastSeenKeys = usernames.stream().map(u -> LAST_SEEN_KEY_PREFIX + u).toList();
+        List<String> lastSeen = redisTemplate.opsForValue().multiGet(lastSeenKeys);
+
+        List<PresenceResponse> result = new ArrayList<>(usernames.size());
+        for (int i = 0; i < usernames.size(); i++) {
+            boolean online = isFresh(heartbeats != null ? heartbeats.get(i) : null);
+            String seen = lastSeen != null ? lastSeen.get(i) : null;
+            result.add(PresenceResponse.builder()
+                    .username(usernames.get(i))
+                    .status(online ? "online" : "offline")
+                    .lastSeen(seen != null ? Long.parseLong(seen) : null)
+                    .build());
         }
-        
-        // Also add last seen for known offline users? 
-        // For now, only return online users for simplicity, or 
-        // just let the frontend assume missing users are offline.
         return result;
     }
+
+    /**
+     * Page through online users in username order. The cursor is the last username of the previous page.
+     */
+    public CursorPage<PresenceResponse> getOnlineUsers(String cursor, int limit) {
+        Range<String> range = cursor == null
+                ? Range.unbounded()
+                : Range.rightUnbounded(Range.Bound.exclusive(CursorCodec.decode(cursor, 1)[0]));
+        Set<String> candidates = redisTemplate.opsForZSet()
+                .rangeByLex(ONLINE_LEX_KEY, range, Limit.limit().count(limit + 1));
+        List<String> names = candidates != null ? new ArrayList<>(candidates) : new ArrayList<>();
+        boolean hasMore = names.size() > limit;
+        if (hasMore) {
+            names = names.subList(0, limit);
+        }
+        if (names.isEmpty()) {
+            return CursorPage.<PresenceResponse>builder().items(List.of()).hasMore(false).build();
+        }
+
+        // Entries whose heartbeat expired but have not been swept yet are skipped
+        List<Double> heartbeats = redisTemplate.opsForZSet().score(ONLINE_KEY, names.toArray());
+        List<PresenceResponse> items = new ArrayList<>(names.size());
+        for (int i = 0; i < names.size(); i++) {
+            if (heartbeats != null && isFresh(heartbeats.get(i))) {
+                items.add(PresenceResponse.builder().username(names.get(i)).status("online").build());
+            }
+        }
+        return CursorPage.<PresenceResponse>builder()
+                .items(items)
+                .nextCursor(hasMore ? CursorCodec.encode(names.get(names.size() - 1)) : null)
+                .hasMore(hasMore)
+                .build();
+    }
+
+    /**
+     * Moves users whose heartbeat has expired out of the online registry, in bounded batches.
+     */
+    @Scheduled(fixedDelayString = "${chat.presence.sweep-interval-ms:30000}")
+    public void sweepExpired() {
+        String cutoff = String.valueOf(System.currentTimeMillis() - TimeUnit.MINUTES.toMillis(PRESENCE_TTL_MINUTES));
+        long total = 0;
+        List<?> swept;
+        do {
+            swept = redisTemplate.execute(SWEEP_SCRIPT, List.of(ONLINE_KEY, ONLINE_LEX_KEY),
+                    cutoff, String.valueOf(SWEEP_BATCH_SIZE), LAST_SEEN_KEY_PREFIX);
+            if (swept == null) {
+                break;
+            }
+            for (int i = 0; i + 1 < swept.size(); i += 2) {
+                publishTransition(PresenceEvent.builder()
+                        .username(String.valueOf(swept.get(i)))
+                        .status("offline")
+                        .lastSeen(Long.parseLong(String.valueOf(swept.get(i + 1))))
+                        .build());
+            }
+            total += swept.size() / 2;
+        } while (swept.size() / 2 == SWEEP_BATCH_SIZE);
+        if (total > 0) {
+            log.info("Presence sweep marked {} users offline", total);
+        }
+    }
+
+    /**
+     * Broadcasts an online/offline transition to every node, where PresenceNotifier pushes it to watchers.
+     */
+    private void publishTransition(PresenceEvent event) {
+        try {
+            redisTemplate.convertAndSend(EVENTS_CHANNEL, objectMapper.writeValueAsString(event));
+        } catch (Exception e) {
+            log.warn("Failed to publish presence transition for {}: {}", event.getUsername(), e.getMessage());
+        }
+    }
+
+    private boolean isFresh(Double heartbeat) {
+        return heartbeat != null
+                && heartbeat >= System.currentTimeMillis() - TimeUnit.MINUTES.toMillis(PRESENCE_TTL_MINUTES);
+    }
 }
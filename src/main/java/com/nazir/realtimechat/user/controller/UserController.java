@@ -1,12 +1,13 @@
 package com.nazir.realtimechat.user.controller;
 
+import com.nazir.realtimechat.auth.security.AuthenticatedUser;
 import com.nazir.realtimechat.common.dto.ApiResponse;
+import com.nazir.realtimechat.common.dto.CursorPage;
 import com.nazir.realtimechat.user.dto.UserResponse;
 import com.nazir.realtimechat.user.service.UserService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
-import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
@@ -14,7 +15,6 @@ import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 import java.time.LocalDateTime;
-import java.util.List;
 import java.util.UUID;
 
 @RestController
@@ -22,12 +22,18 @@ import java.util.UUID;
 @RequiredArgsConstructor
 public class UserController {
 
+    private static final int MAX_SEARCH_RESULTS = 50;
+
     private final UserService userService;
 
     @GetMapping("/search")
-    public ResponseEntity<ApiResponse<List<UserResponse>>> searchUsers(@RequestParam String query) {
-        List<UserResponse> users = userService.searchUsers(query);
-        ApiResponse<List<UserResponse>> resp = ApiResponse.<List<UserResponse>>builder()
+    public ResponseEntity<ApiResponse<CursorPage<UserResponse>>> searchUsers(
+            @RequestParam String query,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int limit) {
+        CursorPage<UserResponse> users = userService.searchUsers(query, cursor,
+                Math.min(Math.max(limit, 1), MAX_SEARCH_RESULTS));
+        ApiResponse<CursorPage<UserResponse>> resp = ApiResponse.<CursorPage<UserResponse>>builder()
                 .success(true)
                 .data(users)
                 .message("Users searched successfully")
@@ -37,8 +43,8 @@ public class UserController {
     }
 
     @GetMapping("/me")
-    public ResponseEntity<ApiResponse<UserResponse>> getCurrentUser(@AuthenticationPrincipal UserDetails userDetails) {
-        UserResponse user = userService.getUserByUsername(userDetails.getUsername());
+    public ResponseEntity<ApiResponse<UserResponse>> getCurrentUser(@AuthenticationPrincipal AuthenticatedUser currentUser) {
+        UserResponse user = userService.getUserById(currentUser.getUserId());
         ApiResponse<UserResponse> resp = ApiResponse.<UserResponse>builder()
                 .success(true)
                 .data(user)
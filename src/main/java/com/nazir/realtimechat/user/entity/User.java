@@ -1,9 +1,9 @@
 package com.nazir.realtimechat.user.entity;
 
 import com.nazir.realtimechat.common.entity.BaseEntity;
+import com.nazir.realtimechat.common.entity.TimeOrderedId;
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
-import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.Id;
 import jakarta.persistence.Table;
 import lombok.Getter;
@@ -20,7 +20,7 @@ import java.util.UUID;
 public class User extends BaseEntity {
 
     @Id
-    @GeneratedValue
+    @TimeOrderedId
     private UUID id;
 
     @Column(nullable = false, unique = true, length = 50)
@@ -1,7 +1,6 @@
 package com.nazir.realtimechat.user.repository;
 
 import com.nazir.realtimechat.user.entity.User;
-import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 import org.springframework.data.jpa.repository.JpaRepository;
@@ -14,5 +13,4 @@ public interface UserRepository extends JpaRepository<User, UUID> {
     Optional<User> findByUsernameOrEmail(String username, String email);
     boolean existsByUsername(String username);
     boolean existsByEmail(String email);
-    List<User> findByUsernameContainingIgnoreCase(String username);
 }
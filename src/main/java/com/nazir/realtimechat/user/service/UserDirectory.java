@@ -0,0 +1,255 @@
+package com.nazir.realtimechat.user.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nazir.realtimechat.common.dto.CursorPage;
+import com.nazir.realtimechat.common.exception.BadRequestException;
+import com.nazir.realtimechat.common.util.CursorCodec;
+import com.nazir.realtimechat.common.util.IdGenerator;
+import com.nazir.realtimechat.user.dto.UserResponse;
+import com.nazir.realtimechat.user.entity.User;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
+import java.util.TimeZone;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * In-memory username index for the "new chat" autocomplete, loaded once at startup and kept
+ * current as users register (on other nodes too, over Redis pub/sub). Searches never touch the
+ * database. Matches rank exact, then prefix, then infix (three characters or more), and within
+ * a rank alphabetically.
+ * <p>
+ * Usernames are kept in a sorted map keyed by {@code lowercase + '\0' + username}, so a prefix is
+ * one contiguous range and case variants of the same name stay distinct. Infix matches come from
+ * a trigram index of the same keys.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class UserDirectory implements MessageListener {
+
+    private static final String ADDED_CHANNEL = "chat:user-directory:added";
+    private static final String LOAD_SQL = "SELECT id, username, email, created_at, updated_at FROM users";
+
+    private static final char KEY_SEPARATOR = '\0';
+    private static final int GRAM = 3;
+
+    private static final int EXACT = 0;
+    private static final int PREFIX = 1;
+    private static final int INFIX = 2;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+    private final StringRedisTemplate redisTemplate;
+    private final RedisMessageListenerContainer listenerContainer;
+    private final MeterRegistry meterRegistry;
+
+    private final ConcurrentSkipListMap<String, UserResponse> byKey = new ConcurrentSkipListMap<>();
+    private final Map<String, NavigableSet<String>> byTrigram = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    void load() {
+        listenerContainer.addMessageListener(this, new ChannelTopic(ADDED_CHANNEL));
+        Calendar utc = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+        // Rows are indexed as they stream in rather than collected into a list first
+        jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement(LOAD_SQL, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            // Connector/J streams rows one at a time instead of buffering the whole result set
+            ps.setFetchSize(Integer.MIN_VALUE);
+            return ps;
+        }, (RowCallbackHandler) rs -> {
+            Timestamp createdAt = rs.getTimestamp("created_at", utc);
+            Timestamp updatedAt = rs.getTimestamp("updated_at", utc);
+            add(UserResponse.builder()
+                    .id(IdGenerator.fromBytes(rs.getBytes("id")))
+                    .username(rs.getString("username"))
+                    .email(rs.getString("email"))
+                    .createdAt(createdAt != null ? createdAt.toInstant() : null)
+                    .updatedAt(updatedAt != null ? updatedAt.toInstant() : null)
+                    .build());
+        });
+        Gauge.builder("chat.users.directory.size", byKey, Map::size)
+                .description("Users held in the in-memory search directory")
+                .register(meterRegistry);
+        log.info("User directory loaded with {} users", byKey.size());
+    }
+
+    /**
+     * Adds a newly registered user here and, once the registration commits, on every other node.
+     */
+    public void registered(User user) {
+        UserResponse response = UserService.toResponse(user);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    add(response);
+                    publishAdded(response);
+                }
+            });
+        } else {
+            add(response);
+            publishAdded(response);
+        }
+    }
+
+    public CursorPage<UserResponse> search(String query, String cursor, int limit) {
+        String q = query.trim().toLowerCase(Locale.ROOT);
+        int afterRank = -1;
+        String afterKey = null;
+        if (cursor != null) {
+            String[] parts = CursorCodec.decode(cursor, 2);
+            try {
+                afterRank = Integer.parseInt(parts[0]);
+            } catch (NumberFormatException e) {
+                throw new BadRequestException("Invalid cursor");
+            }
+            afterKey = parts[1];
+        }
+
+        List<Hit> hits = new ArrayList<>(limit + 1);
+        if (afterRank <= EXACT) {
+            collect(hits, limit, EXACT, range(q + KEY_SEPARATOR, q + (char) (KEY_SEPARATOR + 1), afterRank == EXACT ? afterKey : null).keySet());
+        }
+        if (afterRank <= PREFIX) {
+            collect(hits, limit, PREFIX, range(q + (char) (KEY_SEPARATOR + 1), q + Character.MAX_VALUE, afterRank == PREFIX ? afterKey : null).keySet());
+        }
+        if (afterRank <= INFIX && q.length() >= GRAM) {
+            NavigableSet<String> candidates = infixCandidates(q);
+            if (afterRank == INFIX) {
+                candidates = candidates.tailSet(afterKey, false);
+            }
+            collect(hits, limit, INFIX, candidates.stream()
+                    .filter(key -> {
+                        String name = key.substring(0, key.indexOf(KEY_SEPARATOR));
+                        return !name.startsWith(q) && name.contains(q);
+                    })::iterator);
+        }
+
+        boolean hasMore = hits.size() > limit;
+        List<Hit> page = hasMore ? hits.subList(0, limit) : hits;
+        String nextCursor = null;
+        if (hasMore) {
+            Hit last = page.get(page.size() - 1);
+            nextCursor = CursorCodec.encode(String.valueOf(last.rank()), last.key());
+        }
+        return CursorPage.<UserResponse>builder()
+                .items(page.stream().map(Hit::user).toList())
+                .nextCursor(nextCursor)
+                .hasMore(hasMore)
+                .build();
+    }
+
+    /**
+     * Adds a user registered on another node. The update carries the user, so the single listener
+     * thread shared by every Redis subscription never waits on the database here.
+     */
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        try {
+            add(objectMapper.readValue(message.getBody(), DirectoryEntry.class).toResponse());
+        } catch (Exception e) {
+            log.warn("Ignoring malformed user directory update: {}", e.getMessage());
+        }
+    }
+
+    private void add(UserResponse user) {
+        String name = user.getUsername().toLowerCase(Locale.ROOT);
+        String key = name + KEY_SEPARATOR + user.getUsername();
+        byKey.put(key, user);
+        for (int i = 0; i + GRAM <= name.length(); i++) {
+            byTrigram.computeIfAbsent(name.substring(i, i + GRAM), g -> new ConcurrentSkipListSet<>()).add(key);
+        }
+    }
+
+    private NavigableMap<String, UserResponse> range(String from, String to, String after) {
+        NavigableMap<String, UserResponse> range = byKey.subMap(from, true, to, false);
+        return after != null ? range.tailMap(after, false) : range;
+    }
+
+    /**
+     * Keys holding every trigram of the query, read from its rarest trigram's postings.
+     */
+    private NavigableSet<String> infixCandidates(String q) {
+        NavigableSet<String> smallest = null;
+        for (int i = 0; i + GRAM <= q.length(); i++) {
+            NavigableSet<String> postings = byTrigram.get(q.substring(i, i + GRAM));
+            if (postings == null) {
+                return new ConcurrentSkipListSet<>();
+            }
+            if (smallest == null || postings.size() < smallest.size()) {
+                smallest = postings;
+            }
+        }
+        return smallest;
+    }
+
+    private void collect(List<Hit> hits, int limit, int rank, Iterable<String> keys) {
+        for (String key : keys) {
+            if (hits.size() > limit) {
+                return;
+            }
+            UserResponse user = byKey.get(key);
+            if (user != null) {
+                hits.add(new Hit(rank, key, user));
+            }
+        }
+    }
+
+    private void publishAdded(UserResponse user) {
+        try {
+            redisTemplate.convertAndSend(ADDED_CHANNEL, objectMapper.writeValueAsString(DirectoryEntry.of(user)));
+        } catch (Exception e) {
+            // Other nodes pick the user up on their next restart
+            log.warn("Failed to publish user directory update for {}: {}", user.getId(), e.getMessage());
+        }
+    }
+
+    private record Hit(int rank, String key, UserResponse user) {
+    }
+
+    // The API form of a user formats its timestamps for display and cannot be read back
+    private record DirectoryEntry(UUID id, String username, String email, Instant createdAt, Instant updatedAt) {
+
+        static DirectoryEntry of(UserResponse user) {
+            return new DirectoryEntry(user.getId(), user.getUsername(), user.getEmail(), user.getCreatedAt(), user.getUpdatedAt());
+        }
+
+        UserResponse toResponse() {
+            return UserResponse.builder()
+                    .id(id)
+                    .username(username)
+                    .email(email)
+                    .createdAt(createdAt)
+                    .updatedAt(updatedAt)
+                    .build();
+        }
+    }
+}
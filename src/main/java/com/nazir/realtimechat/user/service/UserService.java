@@ -1,5 +1,7 @@
 package com.nazir.realtimechat.user.service;
 
+import com.nazir.realtimechat.common.dto.CursorPage;
+import com.nazir.realtimechat.common.exception.BadRequestException;
 import com.nazir.realtimechat.common.exception.ResourceNotFoundException;
 import com.nazir.realtimechat.user.dto.UserResponse;
 import com.nazir.realtimechat.user.entity.User;
@@ -8,39 +10,40 @@ import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
-import java.util.List;
 import java.util.UUID;
-import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
 public class UserService {
 
     private final UserRepository userRepository;
-
-    @Transactional(readOnly = true)
-    public List<UserResponse> searchUsers(String query) {
-        return userRepository.findByUsernameContainingIgnoreCase(query)
-                .stream()
-                .map(this::mapToUserResponse)
-                .collect(Collectors.toList());
+    private final UserDirectory userDirectory;
+
+    /**
+     * Served from the in-memory {@link UserDirectory}; no database query per keystroke.
+     */
+    public CursorPage<UserResponse> searchUsers(String query, String cursor, int limit) {
+        if (query.isBlank()) {
+            throw new BadRequestException("Search query must not be blank");
+        }
+        return userDirectory.search(query, cursor, limit);
     }
 
     @Transactional(readOnly = true)
     public UserResponse getUserById(UUID id) {
         User user = userRepository.findById(id)
                 .orElseThrow(() -> new ResourceNotFoundException("User not found with id: " + id));
-        return mapToUserResponse(user);
+        return toResponse(user);
     }
 
     @Transactional(readOnly = true)
     public UserResponse getUserByUsername(String username) {
         User user = userRepository.findByUsername(username)
                 .orElseThrow(() -> new ResourceNotFoundException("User not found with username: " + username));
-        return mapToUserResponse(user);
+        return toResponse(user);
     }
 
-    private UserResponse mapToUserResponse(User user) {
+    static UserResponse toResponse(User user) {
         return UserResponse.builder()
                 .id(user.getId())
                 .username(user.getUsername())